@@ -0,0 +1,164 @@
+#!/bin/bash
+
+# Vector Index Benchmark Script
+# Measures recall@10, latency and index size of the HNSW cosine index against an exact scan
+# on synthetic clustered 384-d embeddings (same shape as commit.embedding_vector), for each
+# search.vector.quantization mode: full precision, halfvec and binary candidates re-ranked
+# by exact distance.
+#
+# Usage: ./benchmark_vector_index.sh [sizes...]      e.g. ./benchmark_vector_index.sh 100000 1000000
+# Connection uses the usual libpq variables (PGHOST, PGPORT, PGUSER, PGPASSWORD, PGDATABASE).
+# Everything lives in a throwaway "bench" schema that is dropped at the end.
+
+SIZES=${@:-"100000 1000000"}
+DIM=${BENCH_DIM:-384}
+CLUSTERS=${BENCH_CLUSTERS:-200}
+QUERIES=${BENCH_QUERIES:-100}
+EF_SEARCH_VALUES=${BENCH_EF_SEARCH:-"10 20 40 80 160 320"}
+HNSW_M=${VECTOR_INDEX_HNSW_M:-16}
+HNSW_EF_CONSTRUCTION=${VECTOR_INDEX_HNSW_EF_CONSTRUCTION:-64}
+MODES=${BENCH_QUANTIZATION:-"none halfvec binary"}
+RERANK_FACTOR=${SEARCH_VECTOR_QUANTIZATION_RERANK_FACTOR:-4}
+
+PSQL="psql -X -q -v ON_ERROR_STOP=1"
+
+# Colors for output
+GREEN='\033[0;32m'
+YELLOW='\033[1;33m'
+NC='\033[0m' # No Color
+
+echo "================================"
+echo "Vector Index Benchmark"
+echo "================================"
+echo "dim=$DIM clusters=$CLUSTERS queries=$QUERIES m=$HNSW_M ef_construction=$HNSW_EF_CONSTRUCTION rerank_factor=$RERANK_FACTOR"
+echo ""
+
+trap '$PSQL -c "DROP SCHEMA IF EXISTS bench CASCADE" > /dev/null' EXIT
+
+$PSQL <<SQL || exit 1
+CREATE EXTENSION IF NOT EXISTS vector;
+DROP SCHEMA IF EXISTS bench CASCADE;
+CREATE SCHEMA bench;
+
+-- Cluster centres; rows and queries are noisy copies so neighbourhoods look like real embeddings
+CREATE TABLE bench.centers AS
+SELECT c AS id,
+       (SELECT array_agg(random() * 2 - 1 ORDER BY d) FROM generate_series(1, $DIM) d WHERE c > 0)::real[] AS v
+FROM generate_series(1, $CLUSTERS) c;
+
+CREATE TABLE bench.queries AS
+SELECT q AS id,
+       (SELECT array_agg(ce.v[d] + (random() - 0.5) * 0.6 ORDER BY d) FROM generate_series(1, $DIM) d)::vector($DIM) AS embedding
+FROM generate_series(1, $QUERIES) q
+JOIN bench.centers ce ON ce.id = 1 + (q * 7919) % $CLUSTERS;
+
+CREATE TABLE bench.items (id BIGINT PRIMARY KEY, embedding vector($DIM) NOT NULL);
+CREATE TABLE bench.truth (query_id INT, item_id BIGINT);
+
+-- Runs every query once; ef_search NULL means an exact (sequential) scan.
+-- Quantized modes fetch 10 x rerank candidates by the quantized distance and keep the exact top 10,
+-- like SemanticSearchService does.
+CREATE FUNCTION bench.run(ef_search INT, mode TEXT DEFAULT 'none', rerank INT DEFAULT 1)
+RETURNS TABLE (recall DOUBLE PRECISION, avg_ms DOUBLE PRECISION, p95_ms DOUBLE PRECISION) AS \$\$
+DECLARE
+    q RECORD;
+    started TIMESTAMPTZ;
+    ids BIGINT[];
+    latencies DOUBLE PRECISION[] := '{}';
+    hits BIGINT := 0;
+BEGIN
+    IF ef_search IS NULL THEN
+        PERFORM set_config('enable_indexscan', 'off', true);
+    ELSE
+        PERFORM set_config('hnsw.ef_search', greatest(ef_search, 10 * rerank)::text, true);
+    END IF;
+
+    FOR q IN SELECT id, embedding FROM bench.queries LOOP
+        started := clock_timestamp();
+        IF mode = 'halfvec' THEN
+            SELECT array_agg(s.id) INTO ids
+            FROM (SELECT c.id
+                  FROM (SELECT i.id, i.embedding <=> q.embedding AS distance
+                        FROM bench.items i
+                        ORDER BY i.embedding::halfvec($DIM) <=> q.embedding::halfvec($DIM)
+                        LIMIT 10 * rerank) c
+                  ORDER BY c.distance
+                  LIMIT 10) s;
+        ELSIF mode = 'binary' THEN
+            SELECT array_agg(s.id) INTO ids
+            FROM (SELECT c.id
+                  FROM (SELECT i.id, i.embedding <=> q.embedding AS distance
+                        FROM bench.items i
+                        ORDER BY binary_quantize(i.embedding)::bit($DIM) <~> binary_quantize(q.embedding)
+                        LIMIT 10 * rerank) c
+                  ORDER BY c.distance
+                  LIMIT 10) s;
+        ELSE
+            SELECT array_agg(s.id) INTO ids
+            FROM (SELECT i.id FROM bench.items i ORDER BY i.embedding <=> q.embedding LIMIT 10) s;
+        END IF;
+        latencies := latencies || extract(epoch FROM clock_timestamp() - started) * 1000;
+        hits := hits + (SELECT count(*) FROM bench.truth t WHERE t.query_id = q.id AND t.item_id = ANY (ids));
+    END LOOP;
+
+    RETURN QUERY
+    SELECT hits::float / (10 * $QUERIES),
+           (SELECT avg(x) FROM unnest(latencies) x),
+           (SELECT percentile_cont(0.95) WITHIN GROUP (ORDER BY x) FROM unnest(latencies) x);
+END
+\$\$ LANGUAGE plpgsql;
+SQL
+
+loaded=0
+for size in $SIZES; do
+    echo -e "${YELLOW}Loading $size rows...${NC}"
+    $PSQL <<SQL || exit 1
+INSERT INTO bench.items (id, embedding)
+SELECT i, (SELECT array_agg(ce.v[d] + (random() - 0.5) * 0.6 ORDER BY d) FROM generate_series(1, $DIM) d)::vector($DIM)
+FROM generate_series($loaded + 1, $size) i
+JOIN bench.centers ce ON ce.id = 1 + i % $CLUSTERS;
+ANALYZE bench.items;
+
+-- Exact top 10 per query as ground truth
+TRUNCATE bench.truth;
+SET enable_indexscan = off;
+INSERT INTO bench.truth
+SELECT q.id, nn.id
+FROM bench.queries q
+CROSS JOIN LATERAL (SELECT i.id FROM bench.items i ORDER BY i.embedding <=> q.embedding LIMIT 10) nn;
+RESET enable_indexscan;
+SQL
+    loaded=$size
+
+    echo -e "${GREEN}Results for $size rows:${NC}"
+    printf "%-8s %-12s %-10s %-10s %-10s\n" "mode" "ef_search" "recall@10" "avg_ms" "p95_ms"
+    $PSQL -A -t -F' ' -c "BEGIN" -c "SELECT 'none', 'exact', round(recall::numeric, 3), round(avg_ms::numeric, 2), round(p95_ms::numeric, 2) FROM bench.run(NULL)" -c "COMMIT" \
+        | xargs printf "%-8s %-12s %-10s %-10s %-10s\n"
+
+    for mode in $MODES; do
+        case $mode in
+            halfvec) index_expression="(embedding::halfvec($DIM)) halfvec_cosine_ops"; rerank=$RERANK_FACTOR ;;
+            binary)  index_expression="(binary_quantize(embedding)::bit($DIM)) bit_hamming_ops"; rerank=$RERANK_FACTOR ;;
+            *)       index_expression="embedding vector_cosine_ops"; rerank=1 ;;
+        esac
+
+        build_start=$(date +%s)
+        $PSQL -c "SET maintenance_work_mem = '1GB'" -c "CREATE INDEX items_embedding_${mode}_idx ON bench.items
+                  USING hnsw ($index_expression) WITH (m = $HNSW_M, ef_construction = $HNSW_EF_CONSTRUCTION)" || exit 1
+        index_size=$($PSQL -A -t -c "SELECT pg_size_pretty(pg_relation_size('bench.items_embedding_${mode}_idx'))")
+        echo "[$mode] index built in $(( $(date +%s) - build_start ))s, size $index_size"
+
+        for ef in $EF_SEARCH_VALUES; do
+            $PSQL -A -t -F' ' -c "BEGIN" -c "SELECT '$mode', $ef, round(recall::numeric, 3), round(avg_ms::numeric, 2), round(p95_ms::numeric, 2) FROM bench.run($ef, '$mode', $rerank)" -c "COMMIT" \
+                | xargs printf "%-8s %-12s %-10s %-10s %-10s\n"
+        done
+        $PSQL -c "DROP INDEX bench.items_embedding_${mode}_idx" || exit 1
+    done
+    echo ""
+    echo "---"
+    echo ""
+done
+
+echo "================================"
+echo "Benchmark Complete"
+echo "================================"
@@ -7,7 +7,9 @@ from fastapi import FastAPI, HTTPException
 from fastapi.middleware.cors import CORSMiddleware
 from pydantic import BaseModel
 from sentence_transformers import SentenceTransformer
+from typing import Optional
 import logging
+import os
 
 # Configure logging
 logging.basicConfig(
@@ -28,7 +30,12 @@ app.add_middleware(
 )
 
 # Initialize the model (using a lightweight model for faster inference)
-MODEL_NAME = "all-MiniLM-L6-v2"
+MODEL_NAME = os.getenv("MODEL_NAME", "all-MiniLM-L6-v2")
+
+# Additional models that callers may request explicitly (e.g. while re-embedding
+# the corpus with a new model version). Comma separated, loaded lazily.
+EXTRA_MODELS = [m.strip() for m in os.getenv("EXTRA_MODELS", "").split(",") if m.strip()]
+
 logger.info(f"Loading model: {MODEL_NAME}")
 
 try:
@@ -38,10 +45,25 @@ except Exception as e:
     logger.error(f"Failed to load model: {e}")
     raise
 
+models = {MODEL_NAME: model}
+
+
+def get_model(name: Optional[str]) -> SentenceTransformer:
+    """Resolve the requested model, loading allowed extra models on first use"""
+    if not name or name == MODEL_NAME:
+        return model
+    if name not in EXTRA_MODELS:
+        raise HTTPException(status_code=400, detail=f"Model not allowed: {name}")
+    if name not in models:
+        logger.info(f"Loading extra model: {name}")
+        models[name] = SentenceTransformer(name)
+    return models[name]
+
 
 # Request/Response models
 class EmbedRequest(BaseModel):
     texts: list[str]
+    model: Optional[str] = None
 
 
 class EmbedResponse(BaseModel):
@@ -72,7 +94,7 @@ async def embed_texts(request: EmbedRequest):
         logger.info(f"Generating embeddings for {len(request.texts)} texts")
 
         # Generate embeddings
-        embeddings = model.encode(request.texts, convert_to_numpy=False)
+        embeddings = get_model(request.model).encode(request.texts, convert_to_numpy=False)
 
         # Convert to list format
         embeddings_list = [embedding.tolist() if hasattr(embedding, 'tolist') else list(embedding)
@@ -107,7 +129,7 @@ async def embed_single(request: EmbedRequest):
         logger.info(f"Generating embedding for single text")
 
         # Generate embedding
-        embedding = model.encode(text, convert_to_numpy=False)
+        embedding = get_model(request.model).encode(text, convert_to_numpy=False)
         embedding_list = embedding.tolist() if hasattr(embedding, 'tolist') else list(embedding)
 
         logger.info(f"Successfully generated embedding")
@@ -121,12 +143,14 @@ async def embed_single(request: EmbedRequest):
 
 
 @app.get("/model-info")
-async def model_info():
-    """Get information about the loaded model"""
+async def model_info(model: Optional[str] = None):
+    """Get information about the loaded model (or a requested extra model)"""
+    name = model or MODEL_NAME
+    resolved = get_model(name)
     return {
-        "model": MODEL_NAME,
-        "dimension": model.get_sentence_embedding_dimension(),
-        "max_seq_length": model.max_seq_length
+        "model": name,
+        "dimension": resolved.get_sentence_embedding_dimension(),
+        "max_seq_length": resolved.max_seq_length
     }
 
 
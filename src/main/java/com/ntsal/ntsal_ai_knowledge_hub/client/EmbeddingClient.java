@@ -1,42 +1,75 @@
 package com.ntsal.ntsal_ai_knowledge_hub.client;
 
+import com.ntsal.ntsal_ai_knowledge_hub.service.Deadline;
+import com.ntsal.ntsal_ai_knowledge_hub.service.EmbeddingModelService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @Service
 public class EmbeddingClient {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+    private final EmbeddingModelService embeddingModelService;
+    private final Duration timeout;
 
     @Value("${embedding.service.url:http://embedding_service:8000}")
     private String embeddingServiceUrl;
 
+    public EmbeddingClient(EmbeddingModelService embeddingModelService,
+                           @Value("${embedding.service.timeout-ms:30000}") long timeoutMs) {
+        this.embeddingModelService = embeddingModelService;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        // Bounded so a hung embedding service can't hold a request or the re-embedding job forever
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(Duration.ofSeconds(5));
+        requestFactory.setReadTimeout(timeout);
+        this.restTemplate = new RestTemplate(requestFactory);
+    }
+
+    /**
+     * Embed text with the model currently serving search
+     */
     public float[] generateEmbedding(String text) {
-        // Python service expects {"texts": ["..."]}
-        Map<String, Object> body = Map.of("texts", List.of(text));
+        return generateEmbedding(text, embeddingModelService.getActiveModelName());
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+    /**
+     * Embed text with the active model, giving up when the deadline passes
+     */
+    public float[] generateEmbedding(String text, Deadline deadline) {
+        return generateEmbedding(text, embeddingModelService.getActiveModelName(), deadline);
+    }
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
+    public float[] generateEmbedding(String text, String model) {
+        return generateEmbedding(text, model, null);
+    }
+
+    /**
+     * @param deadline when set, the read timeout is the time it has left (at most the configured timeout),
+     *                 so a caller that stopped waiting doesn't leave the request running; null for no limit
+     */
+    public float[] generateEmbedding(String text, String model, Deadline deadline) {
+        // Python service expects {"texts": ["..."], "model": "..."}
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(buildBody(List.of(text), model), jsonHeaders());
 
         try {
             // Use /embed-single endpoint - most efficient for single text embedding
             String url = embeddingServiceUrl + "/embed-single";
-            ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.POST, entity, Map.class);
+            RestTemplate client = deadline != null ? new RestTemplate(deadline.requestFactory(timeout)) : restTemplate;
+            ResponseEntity<Map> response = client.exchange(url, HttpMethod.POST, entity, Map.class);
             Map<String, Object> responseBody = response.getBody();
 
             if (responseBody != null && responseBody.containsKey("embedding")) {
-                List<Double> vector = (List<Double>) responseBody.get("embedding");
-                float[] floatArray = new float[vector.size()];
-                for (int i = 0; i < vector.size(); i++) {
-                    floatArray[i] = vector.get(i).floatValue();
-                }
-                return floatArray;
+                return toFloatArray((List<Double>) responseBody.get("embedding"));
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -45,4 +78,60 @@ public class EmbeddingClient {
         // fallback
         return new float[0];
     }
+
+    /**
+     * Embed several texts in one request (used by background re-embedding and batch search)
+     */
+    public List<float[]> generateEmbeddings(List<String> texts, String model) {
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(buildBody(texts, model), jsonHeaders());
+
+        String url = embeddingServiceUrl + "/embed";
+        ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.POST, entity, Map.class);
+        Map<String, Object> responseBody = response.getBody();
+        if (responseBody == null || !responseBody.containsKey("embeddings")) {
+            throw new IllegalStateException("Embedding service returned no embeddings");
+        }
+
+        List<List<Double>> vectors = (List<List<Double>>) responseBody.get("embeddings");
+        List<float[]> result = new ArrayList<>(vectors.size());
+        for (List<Double> vector : vectors) {
+            result.add(toFloatArray(vector));
+        }
+        return result;
+    }
+
+    /**
+     * Vector dimension produced by the given model
+     */
+    public int getModelDimension(String model) {
+        String url = embeddingServiceUrl + "/model-info?model={model}";
+        Map<String, Object> info = restTemplate.getForObject(url, Map.class, model);
+        if (info == null || !info.containsKey("dimension")) {
+            throw new IllegalStateException("Embedding service returned no model info for " + model);
+        }
+        return ((Number) info.get("dimension")).intValue();
+    }
+
+    private static Map<String, Object> buildBody(List<String> texts, String model) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("texts", texts);
+        if (model != null) {
+            body.put("model", model);
+        }
+        return body;
+    }
+
+    private static HttpHeaders jsonHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
+    }
+
+    private static float[] toFloatArray(List<Double> vector) {
+        float[] floatArray = new float[vector.size()];
+        for (int i = 0; i < vector.size(); i++) {
+            floatArray[i] = vector.get(i).floatValue();
+        }
+        return floatArray;
+    }
 }
@@ -1,41 +1,108 @@
 package com.ntsal.ntsal_ai_knowledge_hub.client;
 
-import com.ntsal.ntsal_ai_knowledge_hub.entity.ConfigsEntity;
-import com.ntsal.ntsal_ai_knowledge_hub.service.ConfigsService;
+import com.ntsal.ntsal_ai_knowledge_hub.entity.LlmRouteEntity;
+import com.ntsal.ntsal_ai_knowledge_hub.service.Deadline;
+import com.ntsal.ntsal_ai_knowledge_hub.service.LlmRouteService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class LLMClient {
-    private final ConfigsService configsService;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final LlmRouteService llmRouteService;
 
-    public LLMClient(ConfigsService configsService) {
-        this.configsService = configsService;
+    // Read timeout for routes that don't set their own
+    @Value("${llm.timeout-ms:60000}")
+    private long defaultTimeoutMs;
+
+    // Calls without a deadline share one client per route timeout. Deadline calls need a client with the time
+    // they have left, which reuses these message converters (the costly part of a new RestTemplate).
+    private final Map<Duration, RestTemplate> clientsByTimeout = new ConcurrentHashMap<>();
+    private final List<HttpMessageConverter<?>> messageConverters = new RestTemplate().getMessageConverters();
+
+    public LLMClient(LlmRouteService llmRouteService) {
+        this.llmRouteService = llmRouteService;
     }
 
-    public String summarizeCommit(String message, String diff) {
-        ConfigsEntity config = configsService.getLatestConfig();
-        String apiUrl = config.getLlmSummarizerUrl();
-        String apiKey = config.getLlmApiKey();
-        Map<String, Object> body = getSummaryRequestBody(message, diff, config);
+    /**
+     * Chat completion for a task (see LlmRouteEntity.TASK_*), trying the task's routes in order until one
+     * answers. Each attempt gets the route's timeout, cut to what is left of the deadline when one is given.
+     *
+     * @param deadline overall time limit, or null for none
+     * @return the first choice's message content
+     * @throws IllegalStateException when every route failed or the deadline passed
+     */
+    public String chat(String task, List<Map<String, Object>> messages, double temperature, int maxTokens,
+                       Deadline deadline) {
+        List<LlmRouteService.Route> routes = llmRouteService.routes(task);
+        if (routes.isEmpty()) {
+            throw new IllegalStateException("No LLM configured for " + task);
+        }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(apiKey);
+        Exception lastError = null;
+        for (LlmRouteService.Route route : routes) {
+            Duration timeout = Duration.ofMillis(route.timeoutMs() != null ? route.timeoutMs() : defaultTimeoutMs);
+            if (deadline != null && deadline.isExpired()) {
+                break;
+            }
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
+            Map<String, Object> body = Map.of(
+                    "model", route.model(),
+                    "messages", messages,
+                    "temperature", temperature,
+                    "max_tokens", maxTokens
+            );
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            if (route.apiKey() != null && !route.apiKey().isBlank()) {
+                headers.setBearerAuth(route.apiKey());
+            }
 
-        try {
-            ResponseEntity<Map> response = restTemplate.exchange(apiUrl, HttpMethod.POST, entity, Map.class);
-            var choices = (java.util.List<Map<String, Object>>) response.getBody().get("choices");
-            if (choices != null && !choices.isEmpty()) {
-                Map<String, Object> msg = (Map<String, Object>) choices.get(0).get("message");
-                return msg.get("content").toString().trim();
+            try {
+                RestTemplate restTemplate = client(timeout, deadline);
+                ResponseEntity<Map> response = restTemplate.exchange(route.url(), HttpMethod.POST,
+                        new HttpEntity<>(body, headers), Map.class);
+                var choices = (List<Map<String, Object>>) response.getBody().get("choices");
+                if (choices != null && !choices.isEmpty()) {
+                    Map<String, Object> msg = (Map<String, Object>) choices.get(0).get("message");
+                    return msg.get("content").toString().trim();
+                }
+                lastError = new IllegalStateException("No choices in response");
+            } catch (Exception e) {
+                lastError = e;
             }
+            System.err.println("LLM " + task + " via " + route.model() + " failed: " + lastError.getMessage() +
+                    (routes.indexOf(route) < routes.size() - 1 ? ", trying next route" : ""));
+        }
+
+        throw new IllegalStateException("LLM " + task + " failed" +
+                (lastError != null ? ": " + lastError.getMessage() : ": deadline exceeded"), lastError);
+    }
+
+    private RestTemplate client(Duration timeout, Deadline deadline) {
+        if (deadline == null) {
+            return clientsByTimeout.computeIfAbsent(timeout, key -> {
+                RestTemplate client = new RestTemplate(messageConverters);
+                client.setRequestFactory(Deadline.requestFactoryWithTimeout(key));
+                return client;
+            });
+        }
+        RestTemplate client = new RestTemplate(messageConverters);
+        client.setRequestFactory(deadline.requestFactory(timeout));
+        return client;
+    }
+
+    public String summarizeCommit(String message, String diff) {
+        try {
+            return chat(LlmRouteEntity.TASK_SUMMARY, getSummaryMessages(message, diff), 0.3, 200, null);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -44,24 +111,8 @@ public class LLMClient {
     }
 
     public String generateFeedback(String message, String diff) {
-        ConfigsEntity config = configsService.getLatestConfig();
-        String apiUrl = config.getLlmSummarizerUrl();
-        String apiKey = config.getLlmApiKey();
-        Map<String, Object> body = getFeedbackRequestBody(message, diff, config);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(apiKey);
-
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
         try {
-            ResponseEntity<Map> response = restTemplate.exchange(apiUrl, HttpMethod.POST, entity, Map.class);
-            var choices = (java.util.List<Map<String, Object>>) response.getBody().get("choices");
-            if (choices != null && !choices.isEmpty()) {
-                Map<String, Object> msg = (Map<String, Object>) choices.get(0).get("message");
-                return msg.get("content").toString().trim();
-            }
+            return chat(LlmRouteEntity.TASK_FEEDBACK, getFeedbackMessages(message, diff), 0.3, 250, null);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -70,8 +121,7 @@ public class LLMClient {
     }
 
 
-    private static Map<String, Object> getSummaryRequestBody(String message, String diff, ConfigsEntity config) {
-        String model = config.getLlmModel();
+    private static List<Map<String, Object>> getSummaryMessages(String message, String diff) {
         String prompt = """
             You are an AI assistant that summarizes code changes.
             Given a commit message and the diff of the code,
@@ -85,18 +135,12 @@ public class LLMClient {
             %s
         """.formatted(message, diff.length() > 2000 ? diff.substring(0, 2000) + "..." : diff);
 
-        return Map.of(
-                "model", model,
-                "messages", new Object[]{
-                        Map.of("role", "user", "content", prompt)
-                },
-                "temperature", 0.3,
-                "max_tokens", 200
+        return List.of(
+                Map.of("role", "user", "content", prompt)
         );
     }
 
-    private static Map<String, Object> getFeedbackRequestBody(String message, String diff, ConfigsEntity config) {
-        String model = config.getLlmModel();
+    private static List<Map<String, Object>> getFeedbackMessages(String message, String diff) {
         String prompt = """
             You are an expert code reviewer. Analyze this commit and provide structured code quality feedback.
             
@@ -115,14 +159,9 @@ public class LLMClient {
             %s
         """.formatted(message, diff.length() > 2000 ? diff.substring(0, 2000) + "..." : diff);
 
-        return Map.of(
-                "model", model,
-                "messages", new Object[]{
-                        Map.of("role", "system", "content", "You are an expert code reviewer with deep knowledge of software engineering best practices and code quality standards."),
-                        Map.of("role", "user", "content", prompt)
-                },
-                "temperature", 0.3,
-                "max_tokens", 250
+        return List.of(
+                Map.of("role", "system", "content", "You are an expert code reviewer with deep knowledge of software engineering best practices and code quality standards."),
+                Map.of("role", "user", "content", prompt)
         );
     }
 }
@@ -0,0 +1,71 @@
+package com.ntsal.ntsal_ai_knowledge_hub.config;
+
+import com.ntsal.ntsal_ai_knowledge_hub.entity.converter.EmbeddingVector;
+import org.postgresql.core.Oid;
+import org.postgresql.core.QueryExecutor;
+import org.postgresql.jdbc.PgConnection;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Registers the pgvector type on every pooled connection so vectors are sent and received
+// in pgvector's binary format (as EmbeddingVector) instead of being formatted and parsed as text
+@Configuration
+public class PgvectorDataSourceConfig {
+
+    @Bean
+    public static BeanPostProcessor pgvectorDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof PgvectorDataSource)) {
+                    return new PgvectorDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    public static class PgvectorDataSource extends DelegatingDataSource {
+
+        public PgvectorDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return registerVectorType(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return registerVectorType(super.getConnection(username, password));
+        }
+
+        /**
+         * Cheap after the first call on a physical connection: the driver caches the type oid
+         * and the registrations are idempotent set/map insertions.
+         */
+        static Connection registerVectorType(Connection connection) throws SQLException {
+            if (!connection.isWrapperFor(PgConnection.class)) {
+                return connection;
+            }
+            PgConnection pgConnection = connection.unwrap(PgConnection.class);
+            pgConnection.addDataType(EmbeddingVector.PG_TYPE, EmbeddingVector.class);
+
+            // Unspecified until the vector extension exists in this database
+            int oid = pgConnection.getTypeInfo().getPGType(EmbeddingVector.PG_TYPE);
+            if (oid != Oid.UNSPECIFIED) {
+                QueryExecutor queryExecutor = pgConnection.getQueryExecutor();
+                queryExecutor.addBinarySendOid(oid);
+                queryExecutor.addBinaryReceiveOid(oid);
+            }
+            return connection;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.ntsal.ntsal_ai_knowledge_hub.controller;
 
 import com.ntsal.ntsal_ai_knowledge_hub.service.AiQueryService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
@@ -39,7 +41,15 @@ public class AiQueryController {
         }
 
         return aiQueryService.ask(message)
-                .map(ResponseEntity::ok)
+                .map(result -> {
+                    // Shed by admission control: the client should back off and retry
+                    if (Boolean.TRUE.equals(result.get("overloaded"))) {
+                        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                .header(HttpHeaders.RETRY_AFTER, String.valueOf(result.get("retry_after_seconds")))
+                                .body(result);
+                    }
+                    return ResponseEntity.ok(result);
+                })
                 .onErrorResume(error ->
                     Mono.just(ResponseEntity.internalServerError()
                             .body(Map.of(
@@ -1,19 +1,30 @@
 package com.ntsal.ntsal_ai_knowledge_hub.controller;
 
+import com.ntsal.ntsal_ai_knowledge_hub.dto.BatchSearchRequest;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchCursor;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchFilter;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchTuning;
 import com.ntsal.ntsal_ai_knowledge_hub.service.CommitCollectorService;
 import com.ntsal.ntsal_ai_knowledge_hub.entity.CommitEntity;
 import com.ntsal.ntsal_ai_knowledge_hub.service.CommitEmbeddingService;
 import com.ntsal.ntsal_ai_knowledge_hub.service.CommitSummarizerService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/commit")
 public class CommitCollectorController {
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_BATCH_QUERIES = 50;
+    private static final int DEFAULT_BATCH_LIMIT = 10;
 
     private final CommitCollectorService commitCollectorService;
     private final CommitSummarizerService summarizerService;
@@ -67,8 +78,76 @@ public class CommitCollectorController {
     }
 
     // Search commits by embedding vector
+    // efSearch / probes optionally override the vector index settings for this query
     @GetMapping("/search")
-    public Map<String, Object> search(@RequestParam String query) {
-        return embeddingService.search(query);
+    public ResponseEntity<Map<String, Object>> search(@RequestParam String query,
+                                                      @RequestParam(required = false) Integer efSearch,
+                                                      @RequestParam(required = false) Integer probes,
+                                                      @RequestParam(required = false) String author,
+                                                      @RequestParam(required = false) String repo,
+                                                      @RequestParam(required = false)
+                                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                      @RequestParam(required = false)
+                                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                      @RequestParam(required = false) String filePath) {
+        SearchTuning tuning;
+        SearchFilter filter;
+        try {
+            tuning = new SearchTuning(efSearch, probes);
+            filter = new SearchFilter(author, repo, from, to, filePath);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.ok(embeddingService.search(query, tuning, filter));
+    }
+
+    // One page of search results, streamed as it is read; pass nextCursor back as cursor for the next page
+    @GetMapping("/search/page")
+    public ResponseEntity<?> searchPage(@RequestParam String query,
+                                        @RequestParam(defaultValue = "20") int pageSize,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(required = false) String author,
+                                        @RequestParam(required = false) String repo,
+                                        @RequestParam(required = false)
+                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                        @RequestParam(required = false)
+                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                        @RequestParam(required = false) String filePath) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("error", "pageSize must be between 1 and " + MAX_PAGE_SIZE));
+        }
+        SearchCursor after;
+        SearchFilter filter;
+        try {
+            after = SearchCursor.decode(cursor);
+            filter = new SearchFilter(author, repo, from, to, filePath);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        StreamingResponseBody body = out -> embeddingService.writeSearchPage(query, pageSize, after, filter, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // Many searches in one call: one embedding request and one database round trip
+    @PostMapping("/search/batch")
+    public ResponseEntity<Map<String, Object>> searchBatch(@RequestBody BatchSearchRequest request) {
+        List<BatchSearchRequest.Query> queries = request.queries();
+        if (queries == null || queries.isEmpty() || queries.size() > MAX_BATCH_QUERIES) {
+            return ResponseEntity.badRequest().body(Map.of("error", "queries must contain 1 to " + MAX_BATCH_QUERIES + " entries"));
+        }
+        for (BatchSearchRequest.Query query : queries) {
+            if (query.query() == null || query.query().isBlank()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "every entry needs a query"));
+            }
+            if (query.limit() != null && (query.limit() < 1 || query.limit() > MAX_PAGE_SIZE)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "limit must be between 1 and " + MAX_PAGE_SIZE));
+            }
+            try {
+                query.filter();
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+        }
+        return ResponseEntity.ok(embeddingService.batchSearch(queries, DEFAULT_BATCH_LIMIT));
     }
 }
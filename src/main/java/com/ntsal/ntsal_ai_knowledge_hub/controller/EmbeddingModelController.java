@@ -0,0 +1,71 @@
+package com.ntsal.ntsal_ai_knowledge_hub.controller;
+
+import com.ntsal.ntsal_ai_knowledge_hub.entity.EmbeddingModelEntity;
+import com.ntsal.ntsal_ai_knowledge_hub.service.EmbeddingModelService;
+import com.ntsal.ntsal_ai_knowledge_hub.service.ReEmbeddingService;
+import com.ntsal.ntsal_ai_knowledge_hub.service.VectorIndexService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/embedding-models")
+public class EmbeddingModelController {
+    private final EmbeddingModelService embeddingModelService;
+    private final ReEmbeddingService reEmbeddingService;
+    private final VectorIndexService vectorIndexService;
+
+    public EmbeddingModelController(EmbeddingModelService embeddingModelService, ReEmbeddingService reEmbeddingService,
+                                    VectorIndexService vectorIndexService) {
+        this.embeddingModelService = embeddingModelService;
+        this.reEmbeddingService = reEmbeddingService;
+        this.vectorIndexService = vectorIndexService;
+    }
+
+    @GetMapping
+    public List<EmbeddingModelEntity> findAll() {
+        return embeddingModelService.findAll();
+    }
+
+    // Active model, model being built and its coverage
+    @GetMapping("/status")
+    public Map<String, Object> status() {
+        return reEmbeddingService.getStatus();
+    }
+
+    // Start re-embedding in the background with a new model; search keeps using the active one
+    @PostMapping("/reembed")
+    public ResponseEntity<Object> reEmbed(@RequestParam String model) {
+        try {
+            return ResponseEntity.ok(reEmbeddingService.startReEmbedding(model));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Cut over to the model being built without waiting for the coverage threshold
+    @PostMapping("/cutover")
+    public ResponseEntity<Object> cutover() {
+        return embeddingModelService.getBuildingModel()
+                .<ResponseEntity<Object>>map(model -> {
+                    reEmbeddingService.cutover(model.getModelName());
+                    return ResponseEntity.ok(reEmbeddingService.getStatus());
+                })
+                .orElseGet(() -> ResponseEntity.badRequest().body(Map.of("error", "No model is being built")));
+    }
+
+    // In-memory vector index state
+    @GetMapping("/index")
+    public Map<String, Object> indexStatus() {
+        return vectorIndexService.getStatus();
+    }
+
+    // Reload the in-memory vector index from the database in the background
+    @PostMapping("/index/rebuild")
+    public Map<String, Object> rebuildIndex() {
+        vectorIndexService.rebuildAsync();
+        return vectorIndexService.getStatus();
+    }
+}
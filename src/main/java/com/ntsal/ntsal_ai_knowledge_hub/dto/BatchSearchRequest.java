@@ -0,0 +1,25 @@
+package com.ntsal.ntsal_ai_knowledge_hub.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Several semantic searches answered in one call. Each query has its own filter and limit;
+ * results are keyed by id (the query's position when id is omitted).
+ */
+public record BatchSearchRequest(List<Query> queries) {
+
+    public record Query(String id,
+                        String query,
+                        Integer limit,
+                        String author,
+                        String repo,
+                        LocalDate from,
+                        LocalDate to,
+                        String filePath) {
+
+        public SearchFilter filter() {
+            return new SearchFilter(author, repo, from, to, filePath);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.ntsal.ntsal_ai_knowledge_hub.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A commit returned by search, with only the columns responses and answer prompts need.
+ * repoName may be null; matchedFile is only set by diff hunk searches.
+ */
+public record CommitSearchHit(long id,
+                              String commitHash,
+                              String author,
+                              LocalDateTime committedDate,
+                              String message,
+                              String summaryText,
+                              String feedback,
+                              String repoName,
+                              String matchedFile,
+                              double score) {
+}
@@ -0,0 +1,53 @@
+package com.ntsal.ntsal_ai_knowledge_hub.dto;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Structured filter for semantic search. Text fields match case-insensitive substrings; the date range
+ * is inclusive on both ends. Null or blank fields don't filter.
+ */
+public record SearchFilter(String author, String repo, LocalDate from, LocalDate to, String filePath) {
+    public static final SearchFilter NONE = new SearchFilter(null, null, null, null, null);
+
+    public SearchFilter {
+        author = blankToNull(author);
+        repo = blankToNull(repo);
+        filePath = blankToNull(filePath);
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+    }
+
+    /**
+     * Parse the planner's {"author", "repo", "from", "to", "file_path"} object; dates are ISO yyyy-MM-dd
+     */
+    public static SearchFilter fromMap(Map<String, Object> map) {
+        if (map == null) {
+            return NONE;
+        }
+        return new SearchFilter(
+                text(map.get("author")),
+                text(map.get("repo")),
+                date(map.get("from")),
+                date(map.get("to")),
+                text(map.get("file_path")));
+    }
+
+    public boolean isEmpty() {
+        return author == null && repo == null && from == null && to == null && filePath == null;
+    }
+
+    private static String text(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static LocalDate date(Object value) {
+        String text = blankToNull(text(value));
+        return text != null ? LocalDate.parse(text) : null;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
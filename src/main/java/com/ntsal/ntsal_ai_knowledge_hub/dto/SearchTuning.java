@@ -0,0 +1,28 @@
+package com.ntsal.ntsal_ai_knowledge_hub.dto;
+
+/**
+ * Per-query vector index settings. Higher efSearch (HNSW) or probes (IVFFlat) trade latency for recall;
+ * null keeps the configured default.
+ */
+public record SearchTuning(Integer efSearch, Integer probes) {
+    public static final SearchTuning DEFAULT = new SearchTuning(null, null);
+
+    public SearchTuning {
+        if (efSearch != null && (efSearch < 1 || efSearch > 1000)) {
+            throw new IllegalArgumentException("efSearch must be between 1 and 1000");
+        }
+        if (probes != null && probes < 1) {
+            throw new IllegalArgumentException("probes must be positive");
+        }
+    }
+
+    public SearchTuning orElse(SearchTuning defaults) {
+        return new SearchTuning(
+                efSearch != null ? efSearch : defaults.efSearch(),
+                probes != null ? probes : defaults.probes());
+    }
+
+    public boolean isDefault() {
+        return efSearch == null && probes == null;
+    }
+}
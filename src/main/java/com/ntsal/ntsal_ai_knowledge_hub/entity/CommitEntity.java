@@ -2,8 +2,8 @@ package com.ntsal.ntsal_ai_knowledge_hub.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.ntsal.ntsal_ai_knowledge_hub.entity.converter.EmbeddingVector;
 import com.ntsal.ntsal_ai_knowledge_hub.entity.converter.PGvectorType;
-import com.pgvector.PGvector;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.Type;
@@ -40,7 +40,16 @@ public class CommitEntity {
     @Column(name = "embedding_vector", columnDefinition = "vector(384)")
     @Type(PGvectorType.class)
     @JsonIgnore
-    private PGvector embeddingVector;
+    private EmbeddingVector embeddingVector;
+
+    // Model that produced embeddingVector (see embedding_model)
+    @Column(name = "embedding_model")
+    private String embeddingModel;
+
+    // SHA-256 of the text embeddingVector was produced from
+    @Column(name = "embedding_content_hash")
+    @JsonIgnore
+    private String embeddingContentHash;
 
     @JsonProperty("hasEmbedding")
     public boolean hasEmbedding() {
@@ -0,0 +1,38 @@
+package com.ntsal.ntsal_ai_knowledge_hub.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * An embedding model version. Exactly one model is ACTIVE (serving search); a model
+ * being rolled out is BUILDING until the re-embedding job cuts over to it.
+ */
+@Entity
+@Table(name = "embedding_model")
+@Data
+public class EmbeddingModelEntity {
+    public static final String STATUS_ACTIVE = "ACTIVE";
+    public static final String STATUS_BUILDING = "BUILDING";
+    public static final String STATUS_RETIRED = "RETIRED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "model_name", nullable = false, unique = true)
+    private String modelName;
+
+    @Column(name = "dimension", nullable = false)
+    private Integer dimension;
+
+    @Column(name = "status", nullable = false)
+    private String status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "activated_at")
+    private LocalDateTime activatedAt;
+}
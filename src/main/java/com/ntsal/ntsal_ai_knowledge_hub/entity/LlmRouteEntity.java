@@ -0,0 +1,50 @@
+package com.ntsal.ntsal_ai_knowledge_hub.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * An OpenAI-compatible chat endpoint and model for one LLM task. A task's enabled routes form its
+ * fallback chain, tried in ascending priority.
+ */
+@Entity
+@Table(name = "llm_route")
+@Data
+public class LlmRouteEntity {
+    public static final String TASK_PLANNER = "PLANNER";
+    public static final String TASK_ANSWER = "ANSWER";
+    public static final String TASK_SUMMARY = "SUMMARY";
+    public static final String TASK_FEEDBACK = "FEEDBACK";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "task", nullable = false)
+    private String task;
+
+    @Column(name = "priority", nullable = false)
+    private Integer priority;
+
+    @Column(name = "url", nullable = false)
+    private String url;
+
+    // Null or blank for local servers that need no key
+    @Column(name = "api_key")
+    private String apiKey;
+
+    @Column(name = "model", nullable = false)
+    private String model;
+
+    // Read timeout for this endpoint; null uses llm.timeout-ms
+    @Column(name = "timeout_ms")
+    private Integer timeoutMs;
+
+    @Column(name = "enabled", nullable = false)
+    private Boolean enabled;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,138 @@
+package com.ntsal.ntsal_ai_knowledge_hub.entity.converter;
+
+import org.postgresql.util.PGBinaryObject;
+import org.postgresql.util.PGobject;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Immutable pgvector value that travels over JDBC in pgvector's binary send/receive format
+ * (int16 dimension, int16 unused, then big-endian float4 values).
+ * <p>
+ * The driver instantiates it reflectively and fills it exactly once through
+ * {@link #setByteValue} or {@link #setValue}; any later write is rejected, so instances can be
+ * shared freely (Hibernate copies are the same object).
+ */
+public final class EmbeddingVector extends PGobject implements PGBinaryObject {
+    public static final String PG_TYPE = "vector";
+
+    private float[] values;
+
+    /**
+     * Used by the JDBC driver only
+     */
+    public EmbeddingVector() {
+        setType(PG_TYPE);
+    }
+
+    public EmbeddingVector(float[] values) {
+        this();
+        this.values = values.clone();
+    }
+
+    public int dimension() {
+        return values.length;
+    }
+
+    public float[] toArray() {
+        return values.clone();
+    }
+
+    // ------------------------------------------------------------------ binary codec
+
+    @Override
+    public int lengthInBytes() {
+        return 4 + 4 * values.length;
+    }
+
+    @Override
+    public void toBytes(byte[] bytes, int offset) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, lengthInBytes());
+        buffer.putShort((short) values.length);
+        buffer.putShort((short) 0);
+        for (float v : values) {
+            buffer.putFloat(v);
+        }
+    }
+
+    @Override
+    public void setByteValue(byte[] bytes, int offset) throws SQLException {
+        assertUnset();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, bytes.length - offset);
+        int dimension = buffer.getShort();
+        buffer.getShort(); // unused
+        float[] decoded = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            decoded[i] = buffer.getFloat();
+        }
+        this.values = decoded;
+    }
+
+    // ------------------------------------------------------------------ text fallback
+
+    /**
+     * Only used when binary transfer is not enabled for the connection
+     */
+    @Override
+    public void setValue(String text) throws SQLException {
+        assertUnset();
+        if (text == null) {
+            return;
+        }
+        String body = text.trim();
+        body = body.substring(1, body.length() - 1);
+        if (body.isEmpty()) {
+            this.values = new float[0];
+            return;
+        }
+        String[] parts = body.split(",");
+        float[] parsed = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            parsed[i] = Float.parseFloat(parts[i].trim());
+        }
+        this.values = parsed;
+    }
+
+    @Override
+    public String getValue() {
+        if (values == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(values.length * 12).append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(values[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    @Override
+    public boolean isNull() {
+        return values == null;
+    }
+
+    private void assertUnset() throws SQLException {
+        if (values != null) {
+            throw new SQLException("EmbeddingVector is immutable");
+        }
+    }
+
+    // ------------------------------------------------------------------ value semantics
+
+    @Override
+    public Object clone() {
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof EmbeddingVector other && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+}
@@ -1,13 +1,16 @@
 package com.ntsal.ntsal_ai_knowledge_hub.entity.converter;
 
-import com.pgvector.PGvector;
 import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import org.hibernate.usertype.UserType;
 
 import java.io.Serializable;
 import java.sql.*;
 
-public class PGvectorType implements UserType<PGvector> {
+/**
+ * Hibernate mapping for pgvector columns. Values are bound and read as {@link EmbeddingVector},
+ * which the driver encodes in pgvector's binary format; being immutable, copies are free.
+ */
+public class PGvectorType implements UserType<EmbeddingVector> {
 
     @Override
     public int getSqlType() {
@@ -15,51 +18,47 @@ public class PGvectorType implements UserType<PGvector> {
     }
 
     @Override
-    public Class<PGvector> returnedClass() {
-        return PGvector.class;
+    public Class<EmbeddingVector> returnedClass() {
+        return EmbeddingVector.class;
     }
 
     @Override
-    public boolean equals(PGvector x, PGvector y) {
+    public boolean equals(EmbeddingVector x, EmbeddingVector y) {
         return x != null && x.equals(y);
     }
 
     @Override
-    public int hashCode(PGvector x) {
+    public int hashCode(EmbeddingVector x) {
         return x != null ? x.hashCode() : 0;
     }
 
     @Override
-    public PGvector nullSafeGet(ResultSet rs, int position, SharedSessionContractImplementor session, Object owner) throws SQLException {
+    public EmbeddingVector nullSafeGet(ResultSet rs, int position, SharedSessionContractImplementor session, Object owner) throws SQLException {
         Object value = rs.getObject(position);
         if (value == null) {
             return null;
         }
-        if (value instanceof PGvector) {
-            return (PGvector) value;
+        if (value instanceof EmbeddingVector vector) {
+            return vector;
         }
-        return new PGvector(value.toString());
+        // Connection without the vector type registered (see PgvectorDataSourceConfig)
+        EmbeddingVector vector = new EmbeddingVector();
+        vector.setValue(value.toString());
+        return vector;
     }
 
     @Override
-    public void nullSafeSet(PreparedStatement st, PGvector value, int index, SharedSessionContractImplementor session) throws SQLException {
+    public void nullSafeSet(PreparedStatement st, EmbeddingVector value, int index, SharedSessionContractImplementor session) throws SQLException {
         if (value == null) {
             st.setNull(index, Types.OTHER);
         } else {
-            st.setObject(index, value, Types.OTHER);
+            st.setObject(index, value);
         }
     }
 
     @Override
-    public PGvector deepCopy(PGvector value) {
-        if (value == null) {
-            return null;
-        }
-        try {
-            return new PGvector(value.toString());
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to deep copy PGvector", e);
-        }
+    public EmbeddingVector deepCopy(EmbeddingVector value) {
+        return value;
     }
 
     @Override
@@ -68,25 +67,17 @@ public class PGvectorType implements UserType<PGvector> {
     }
 
     @Override
-    public Serializable disassemble(PGvector value) {
-        return value != null ? value.toString() : null;
+    public Serializable disassemble(EmbeddingVector value) {
+        return value;
     }
 
     @Override
-    public PGvector assemble(Serializable cached, Object owner) {
-        if (cached == null) {
-            return null;
-        }
-        try {
-            return new PGvector(cached.toString());
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to assemble PGvector", e);
-        }
+    public EmbeddingVector assemble(Serializable cached, Object owner) {
+        return (EmbeddingVector) cached;
     }
 
     @Override
-    public PGvector replace(PGvector detached, PGvector managed, Object owner) {
-        return deepCopy(detached);
+    public EmbeddingVector replace(EmbeddingVector detached, EmbeddingVector managed, Object owner) {
+        return detached;
     }
 }
-
@@ -0,0 +1,14 @@
+package com.ntsal.ntsal_ai_knowledge_hub.repo;
+
+import com.ntsal.ntsal_ai_knowledge_hub.entity.EmbeddingModelEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface EmbeddingModelRepository extends JpaRepository<EmbeddingModelEntity, Long> {
+    Optional<EmbeddingModelEntity> findFirstByStatus(String status);
+
+    Optional<EmbeddingModelEntity> findByModelName(String modelName);
+}
@@ -0,0 +1,12 @@
+package com.ntsal.ntsal_ai_knowledge_hub.repo;
+
+import com.ntsal.ntsal_ai_knowledge_hub.entity.LlmRouteEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface LlmRouteRepository extends JpaRepository<LlmRouteEntity, Long> {
+    List<LlmRouteEntity> findByTaskAndEnabledTrueOrderByPriorityAsc(String task);
+}
@@ -0,0 +1,110 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for /api/ai/query, one bulkhead per plan action: each action has its own limit of
+ * questions running (retrieval and answer LLM call) and its own bounded queue of questions waiting for a
+ * slot. A burst of expensive hybrid searches or generated SQL fills only its own queue; cheap commit
+ * lookups keep their slots. A question that finds its queue full is shed instead of waiting.
+ */
+@Component
+public class ActionBulkhead {
+    private final Map<String, Compartment> compartments;
+
+    // Longest a question waits in the queue for a slot (capped by its deadline) before it is shed
+    @Value("${ai.admission.max-wait-ms:5000}")
+    private long maxWaitMs;
+
+    // Retry-After returned with a shed question
+    @Value("${ai.admission.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    public ActionBulkhead(@Value("${ai.admission.execute-sql.max-concurrent:3}") int sqlConcurrent,
+                          @Value("${ai.admission.execute-sql.max-queued:6}") int sqlQueued,
+                          @Value("${ai.admission.semantic-search.max-concurrent:6}") int semanticConcurrent,
+                          @Value("${ai.admission.semantic-search.max-queued:12}") int semanticQueued,
+                          @Value("${ai.admission.hybrid-search.max-concurrent:3}") int hybridConcurrent,
+                          @Value("${ai.admission.hybrid-search.max-queued:6}") int hybridQueued,
+                          @Value("${ai.admission.retrieve-commit.max-concurrent:8}") int commitConcurrent,
+                          @Value("${ai.admission.retrieve-commit.max-queued:16}") int commitQueued) {
+        this.compartments = Map.of(
+                "execute_sql", new Compartment(sqlConcurrent, sqlQueued),
+                "semantic_search", new Compartment(semanticConcurrent, semanticQueued),
+                "hybrid_search", new Compartment(hybridConcurrent, hybridQueued),
+                "retrieve_commit", new Compartment(commitConcurrent, commitQueued)
+        );
+    }
+
+    /**
+     * A slot in an action's bulkhead, held until the answer is produced; release is idempotent
+     */
+    public static final class Permit {
+        private final Semaphore slots;
+        private final AtomicInteger released = new AtomicInteger();
+
+        private Permit(Semaphore slots) {
+            this.slots = slots;
+        }
+
+        public void release() {
+            if (slots != null && released.getAndIncrement() == 0) {
+                slots.release();
+            }
+        }
+    }
+
+    private record Compartment(Semaphore slots, AtomicInteger queued, int maxQueued) {
+        Compartment(int maxConcurrent, int maxQueued) {
+            this(new Semaphore(Math.max(1, maxConcurrent), true), new AtomicInteger(), Math.max(0, maxQueued));
+        }
+    }
+
+    public Duration retryAfter() {
+        return Duration.ofSeconds(retryAfterSeconds);
+    }
+
+    /**
+     * A slot for the action, waiting in its queue at most max-wait (and never past the deadline).
+     * Empty when the queue is full or no slot freed up in time: the question should be shed.
+     * Actions without a bulkhead (unsupported ones) are admitted with a no-op permit.
+     */
+    public Optional<Permit> acquire(String action, Deadline deadline) {
+        Compartment compartment = action != null ? compartments.get(action) : null;
+        if (compartment == null) {
+            return Optional.of(new Permit(null));
+        }
+        try {
+            // Timed form even for the immediate try: the untimed one barges past questions already queued
+            if (compartment.slots().tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                return Optional.of(new Permit(compartment.slots()));
+            }
+            if (compartment.queued().incrementAndGet() > compartment.maxQueued()) {
+                compartment.queued().decrementAndGet();
+                System.err.println("🚦 " + action + " queue full (" + compartment.maxQueued() + "), shedding question");
+                return Optional.empty();
+            }
+            try {
+                long waitMs = Math.min(maxWaitMs, deadline.remaining().toMillis());
+                if (compartment.slots().tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+                    return Optional.of(new Permit(compartment.slots()));
+                }
+                System.err.println("🚦 No " + action + " slot within " + waitMs + "ms, shedding question");
+                return Optional.empty();
+            } finally {
+                compartment.queued().decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    }
+}
@@ -2,13 +2,26 @@ package com.ntsal.ntsal_ai_knowledge_hub.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ntsal.ntsal_ai_knowledge_hub.client.EmbeddingClient;
-import com.ntsal.ntsal_ai_knowledge_hub.entity.ConfigsEntity;
-import org.springframework.http.*;
+import com.ntsal.ntsal_ai_knowledge_hub.client.LLMClient;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.CommitSearchHit;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchTuning;
+import com.ntsal.ntsal_ai_knowledge_hub.entity.LlmRouteEntity;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 /**
  * AI Query Service - Main orchestrator for natural language queries
@@ -16,57 +29,208 @@ import java.util.*;
  */
 @Service
 public class AiQueryService {
+    // Full or abbreviated commit hash, as retrieve_commit accepts it
+    private static final Pattern COMMIT_HASH = Pattern.compile("[0-9a-f]{4,40}");
+
     private final QueryPlannerService plannerService;
     private final SqlExecutorService sqlExecutorService;
     private final SemanticSearchService semanticSearchService;
     private final EmbeddingClient embeddingClient;
-    private final ConfigsService configsService;
+    private final LLMClient llmClient;
     private final CommitEmbeddingService commitEmbeddingService;
-    private final RestTemplate restTemplate;
+    private final PlanCache planCache;
+    private final AnswerCache answerCache;
+    private final ContextPacker contextPacker;
+    private final ActionBulkhead actionBulkhead;
     private final ObjectMapper objectMapper;
+    private final Map<String, Mono<Map<String, Object>>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService retrievalExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ai-query-retrieval-", 0).factory());
+
+    // Embed the question and run the default search while the planner LLM is still deciding
+    @Value("${ai.speculative-retrieval.enabled:true}")
+    private boolean speculativeRetrievalEnabled;
+
+    // Time budget for answering one question, end to end
+    @Value("${ai.query.deadline-ms:20000}")
+    private long deadlineMs;
+
+    // Share of the budget spent at most on the cache lookup embedding, then on the planner
+    @Value("${ai.query.cache-key-share:0.1}")
+    private double cacheKeyShare;
+
+    @Value("${ai.query.planner-share:0.4}")
+    private double plannerShare;
 
     public AiQueryService(QueryPlannerService plannerService,
                           SqlExecutorService sqlExecutorService,
                           SemanticSearchService semanticSearchService,
                           EmbeddingClient embeddingClient,
-                          ConfigsService configsService,
-                          CommitEmbeddingService commitEmbeddingService) {
+                          LLMClient llmClient,
+                          CommitEmbeddingService commitEmbeddingService,
+                          PlanCache planCache,
+                          AnswerCache answerCache,
+                          ContextPacker contextPacker,
+                          ActionBulkhead actionBulkhead) {
         this.plannerService = plannerService;
         this.sqlExecutorService = sqlExecutorService;
         this.semanticSearchService = semanticSearchService;
         this.embeddingClient = embeddingClient;
-        this.configsService = configsService;
+        this.llmClient = llmClient;
         this.commitEmbeddingService = commitEmbeddingService;
-        this.restTemplate = new RestTemplate();
+        this.planCache = planCache;
+        this.answerCache = answerCache;
+        this.contextPacker = contextPacker;
+        this.actionBulkhead = actionBulkhead;
         this.objectMapper = new ObjectMapper();
     }
 
+    @PreDestroy
+    public void shutdown() {
+        retrievalExecutor.shutdownNow();
+    }
+
     /**
-     * Main entry point: Ask a natural language question and get an AI-powered answer
+     * Main entry point: Ask a natural language question and get an AI-powered answer.
+     * Identical questions asked while one is being answered wait for that answer instead of running again.
      */
     public Mono<Map<String, Object>> ask(String question) {
-        return plannerService.plan(question)
-                .flatMap(plan -> executePlan(question, plan))
-                .onErrorResume(error -> {
-                    System.err.println("AiQueryService error: " + error.getMessage());
-                    return Mono.just(Map.of(
-                            "answer", "Sorry, I encountered an error processing your question: " + error.getMessage(),
-                            "error", true
-                    ));
-                });
+        String key = question.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").replaceAll("[?.!]+$", "");
+        return inFlight.computeIfAbsent(key, k -> {
+            AtomicReference<Mono<Map<String, Object>>> shared = new AtomicReference<>();
+            shared.set(Mono.defer(() -> answer(question, Deadline.after(Duration.ofMillis(deadlineMs))))
+                    .onErrorResume(error -> {
+                        System.err.println("AiQueryService error: " + error.getMessage());
+                        return Mono.just(Map.of(
+                                "answer", "Sorry, I encountered an error processing your question: " + error.getMessage(),
+                                "error", true
+                        ));
+                    })
+                    // Leaves the map once answered: later askers get fresh (or answer-cached) results, never this one.
+                    // Only this answer is removed, not a newer one another asker started under the same key since.
+                    .doFinally(signal -> inFlight.remove(k, shared.get()))
+                    .cache());
+            return shared.get();
+        });
+    }
+
+    private Mono<Map<String, Object>> answer(String question, Deadline deadline) {
+        // One template embedding serves both the answer cache and the plan cache
+        Optional<PlanCache.Key> cacheKey = planCache.isEnabled() || answerCache.isEnabled() ?
+                cacheKey(question, deadline) : Optional.empty();
+        AnswerCache.Freshness freshness = cacheKey.isPresent() && answerCache.isEnabled() ? answerCache.freshness() : null;
+        if (freshness != null) {
+            Optional<Map<String, Object>> cached = answerCache.lookup(cacheKey.get(), freshness);
+            if (cached.isPresent()) {
+                return Mono.just(cached.get());
+            }
+        }
+
+        // Only worth it while an LLM plans; cache hits and fast paths are answered right away
+        Optional<QueryPlannerService.Plan> knownPlan = plannerService.planWithoutLlm(question, cacheKey);
+        Speculation speculation = speculativeRetrievalEnabled && knownPlan.isEmpty() ?
+                speculate(question, deadline) : null;
+
+        return knownPlan.map(Mono::just)
+                .orElseGet(() -> plannerService.planWithLlm(question, cacheKey, deadline.share(plannerShare)))
+                .flatMap(plan -> executePlan(question, plan, speculation, deadline)
+                        .doOnNext(answer -> {
+                            if (freshness != null && !answer.containsKey("error") && !answer.containsKey("fallback")
+                                    && !answer.containsKey("partial")) {
+                                answerCache.store(cacheKey.get(), plan, freshness, answer);
+                            }
+                        }));
+    }
+
+    /**
+     * The caches are an optimisation: if embedding the question is slow, skip them rather than spend the budget
+     */
+    private Optional<PlanCache.Key> cacheKey(String question, Deadline deadline) {
+        try {
+            Deadline keyDeadline = deadline.share(cacheKeyShare);
+            return withinDeadline(keyDeadline, () -> planCache.key(question, keyDeadline));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Question embedding and default top-k search (what a semantic_search plan for the question itself
+     * runs), started before planning and only used if the plan searches for the question as asked
+     */
+    private record Speculation(String question,
+                               CompletableFuture<float[]> embedding,
+                               CompletableFuture<List<CommitSearchHit>> results) {
+
+        boolean covers(String searchQuery) {
+            return question.trim().equalsIgnoreCase(searchQuery.trim());
+        }
+
+        /**
+         * Drop the speculative search: not started yet, it never starts; already running, its
+         * statement_timeout (the question's deadline) ends it
+         */
+        void cancel() {
+            results.cancel(false);
+        }
+
+        /**
+         * Waits for the speculative search; null if it failed, so the caller searches again itself
+         */
+        List<CommitSearchHit> completedResults() {
+            try {
+                return results.get();
+            } catch (InterruptedException | ExecutionException e) {
+                System.err.println("Speculative search failed: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    private Speculation speculate(String question, Deadline deadline) {
+        CompletableFuture<float[]> embedding = CompletableFuture.supplyAsync(
+                () -> embeddingClient.generateEmbedding(question, deadline), retrievalExecutor);
+        CompletableFuture<List<CommitSearchHit>> results = embedding.thenApplyAsync(queryEmbedding ->
+                queryEmbedding.length == 0 ? null :
+                        semanticSearchService.fusedSearch(question, queryEmbedding, 10, deadline),
+                retrievalExecutor);
+        return new Speculation(question, embedding, results);
     }
 
     /**
      * Execute the planned action
      */
-    private Mono<Map<String, Object>> executePlan(String question, QueryPlannerService.Plan plan) {
+    private Mono<Map<String, Object>> executePlan(String question, QueryPlannerService.Plan plan, Speculation speculation,
+                                                  Deadline deadline) {
         System.out.println("Executing plan: " + plan.action());
 
+        String searchQuery = plan.query() != null ? plan.query() : question;
+        boolean reuse = speculation != null && speculation.covers(searchQuery)
+                && ("semantic_search".equals(plan.action()) || "hybrid_search".equals(plan.action()));
+        if (speculation != null && !reuse) {
+            speculation.cancel();
+        }
+
+        // Held through retrieval and the answer LLM call, so each action only competes with its own kind
+        Optional<ActionBulkhead.Permit> permit = actionBulkhead.acquire(plan.action(), deadline);
+        if (permit.isEmpty()) {
+            if (speculation != null) {
+                speculation.cancel();
+            }
+            return Mono.just(overloaded(plan.action()));
+        }
+
+        return Mono.defer(() -> runPlan(question, plan, reuse ? speculation : null, deadline))
+                .doFinally(signal -> permit.get().release());
+    }
+
+    private Mono<Map<String, Object>> runPlan(String question, QueryPlannerService.Plan plan, Speculation speculation,
+                                              Deadline deadline) {
         return switch (plan.action()) {
-            case "execute_sql" -> executeSqlQuery(question, plan);
-            case "semantic_search" -> executeSemanticSearch(question, plan);
-            case "retrieve_commit" -> retrieveCommit(question, plan);
-            case "hybrid_search" -> executeHybridSearch(question, plan);
+            case "execute_sql" -> executeSqlQuery(question, plan, deadline);
+            case "semantic_search" -> executeSemanticSearch(question, plan, speculation, deadline);
+            case "retrieve_commit" -> retrieveCommit(question, plan, deadline);
+            case "hybrid_search" -> executeHybridSearch(question, plan, speculation, deadline);
             default -> Mono.just(Map.of(
                     "answer", "Unsupported action: " + plan.action(),
                     "error", true
@@ -77,7 +241,7 @@ public class AiQueryService {
     /**
      * Execute SQL query via MCP and generate natural language answer
      */
-    private Mono<Map<String, Object>> executeSqlQuery(String question, QueryPlannerService.Plan plan) {
+    private Mono<Map<String, Object>> executeSqlQuery(String question, QueryPlannerService.Plan plan, Deadline deadline) {
         if (plan.sql() == null || plan.sql().isEmpty()) {
             return Mono.just(Map.of("answer", "No SQL query provided", "error", true));
         }
@@ -90,33 +254,56 @@ public class AiQueryService {
             ));
         }
 
-        return sqlExecutorService.executeSql(plan.sql())
-                .flatMap(sqlResults -> generateNaturalAnswer(question, sqlResults, "sql"));
+        return sqlExecutorService.executeSql(plan.sql(), "sql", deadline)
+                .flatMap(sqlResults -> generateNaturalAnswer(question, sqlResults, "sql", deadline))
+                .onErrorResume(TimeoutException.class, e -> Mono.just(searchTimedOut("sql")));
     }
 
     /**
      * Execute semantic search using embeddings
      */
-    private Mono<Map<String, Object>> executeSemanticSearch(String question, QueryPlannerService.Plan plan) {
+    private Mono<Map<String, Object>> executeSemanticSearch(String question, QueryPlannerService.Plan plan,
+                                                           Speculation speculation, Deadline deadline) {
         try {
             String searchQuery = plan.query() != null ? plan.query() : question;
 
-            // Generate embedding for the search query
-            float[] queryEmbedding = embeddingClient.generateEmbedding(searchQuery);
+            List<CommitSearchHit> results = withinDeadline(deadline, () -> {
+                // Generate embedding for the search query (already underway when speculated)
+                float[] queryEmbedding = speculation != null ? speculation.embedding().get() :
+                        embeddingClient.generateEmbedding(searchQuery, deadline);
+
+                if (queryEmbedding == null || queryEmbedding.length == 0) {
+                    return null;
+                }
 
-            if (queryEmbedding == null || queryEmbedding.length == 0) {
+                // diff_text searches hunk-level chunk embeddings; summaries fuse full-text and vector ranking
+                if ("diff_text".equals(plan.field())) {
+                    return semanticSearchService.searchByField(plan.field(), queryEmbedding, 10, deadline);
+                }
+                List<CommitSearchHit> speculated = speculation != null ? speculation.completedResults() : null;
+                if (speculated != null) {
+                    System.out.println("🔮 Reusing speculative search results");
+                    return speculated;
+                }
+                return semanticSearchService.fusedSearch(searchQuery, queryEmbedding, 10, deadline);
+            });
+
+            if (results == null) {
+                // The embedding call gives up with an empty vector when its read timeout (the deadline) passes
+                if (deadline.isExpired()) {
+                    return Mono.just(searchTimedOut("semantic"));
+                }
                 return Mono.just(Map.of("answer", "Failed to generate embedding for the query", "error", true));
             }
 
-            // Perform semantic search
-            List<Map<String, Object>> results = semanticSearchService.searchByEmbedding(queryEmbedding, 10);
-
-            // Format results for LLM
-            String formattedResults = semanticSearchService.formatSearchResults(results);
+            // Format results for the LLM within the context budget
+            String formattedResults = contextPacker.packCommits(results, "semantic");
 
             // Generate natural language answer
-            return generateNaturalAnswer(question, formattedResults, "semantic", results);
+            return generateNaturalAnswer(question, formattedResults, "semantic", results, deadline);
 
+        } catch (TimeoutException e) {
+            return Mono.just(searchTimedOut("semantic"));
         } catch (Exception e) {
             System.err.println("Semantic search error: " + e.getMessage());
             return Mono.just(Map.of(
@@ -129,44 +316,62 @@ public class AiQueryService {
     /**
      * Retrieve specific commit by hash
      */
-    private Mono<Map<String, Object>> retrieveCommit(String question, QueryPlannerService.Plan plan) {
+    private Mono<Map<String, Object>> retrieveCommit(String question, QueryPlannerService.Plan plan, Deadline deadline) {
         if (plan.commitHash() == null || plan.commitHash().isEmpty()) {
             return Mono.just(Map.of("answer", "No commit hash provided", "error", true));
         }
 
-        String sql = String.format(
-                "SELECT commit_hash, author, committed_date, message, summary_text, feedback, diff_text " +
-                        "FROM commit WHERE commit_hash LIKE '%s%%' LIMIT 1",
-                plan.commitHash()
-        );
+        // The hash comes from the planner, so it is bound, never spliced; hex digits hold no LIKE wildcards
+        String commitHash = plan.commitHash().trim().toLowerCase(Locale.ROOT);
+        if (!COMMIT_HASH.matcher(commitHash).matches()) {
+            return Mono.just(Map.of("answer", "\"" + plan.commitHash() + "\" is not a commit hash", "error", true));
+        }
+
+        String sql = "SELECT commit_hash, author, committed_date, message, summary_text, feedback, diff_text " +
+                "FROM commit WHERE commit_hash LIKE ? || '%' LIMIT 1";
 
-        return sqlExecutorService.executeSql(sql)
-                .flatMap(results -> generateNaturalAnswer(question, results, "commit"));
+        return sqlExecutorService.executeQuery(sql, "commit", deadline, commitHash)
+                .flatMap(results -> generateNaturalAnswer(question, results, "commit", deadline))
+                .onErrorResume(TimeoutException.class, e -> Mono.just(searchTimedOut("commit")));
     }
 
     /**
-     * Execute hybrid search (SQL filtering + semantic search)
+     * Execute hybrid search (structured filter + semantic search)
      */
-    private Mono<Map<String, Object>> executeHybridSearch(String question, QueryPlannerService.Plan plan) {
+    private Mono<Map<String, Object>> executeHybridSearch(String question, QueryPlannerService.Plan plan,
+                                                         Speculation speculation, Deadline deadline) {
         try {
             String searchQuery = plan.query() != null ? plan.query() : question;
+            if (speculation != null) {
+                speculation.cancel();
+            }
+
+            List<CommitSearchHit> results = withinDeadline(deadline, () -> {
+                // Generate embedding (the speculative one when it embedded the same text; its search is unfiltered)
+                float[] queryEmbedding = speculation != null ? speculation.embedding().get() :
+                        embeddingClient.generateEmbedding(searchQuery, deadline);
 
-            // Generate embedding
-            float[] queryEmbedding = embeddingClient.generateEmbedding(searchQuery);
+                if (queryEmbedding == null || queryEmbedding.length == 0) {
+                    return null;
+                }
 
-            if (queryEmbedding == null || queryEmbedding.length == 0) {
+                // Perform hybrid search
+                return semanticSearchService.hybridSearch(plan.filter(), queryEmbedding, 20, SearchTuning.DEFAULT, deadline);
+            });
+
+            if (results == null) {
+                if (deadline.isExpired()) {
+                    return Mono.just(searchTimedOut("hybrid"));
+                }
                 return Mono.just(Map.of("answer", "Failed to generate embedding", "error", true));
             }
 
-            // Perform hybrid search
-            List<Map<String, Object>> results = plan.sql() != null ?
-                    semanticSearchService.hybridSearch(plan.sql(), queryEmbedding, 20) :
-                    semanticSearchService.searchByEmbedding(queryEmbedding, 20);
+            String formattedResults = contextPacker.packCommits(results, "hybrid");
 
-            String formattedResults = semanticSearchService.formatSearchResults(results);
-
-            return generateNaturalAnswer(question, formattedResults, "hybrid", results);
+            return generateNaturalAnswer(question, formattedResults, "hybrid", results, deadline);
 
+        } catch (TimeoutException e) {
+            return Mono.just(searchTimedOut("hybrid"));
         } catch (Exception e) {
             System.err.println("Hybrid search error: " + e.getMessage());
             return Mono.just(Map.of(
@@ -177,74 +382,114 @@ public class AiQueryService {
     }
 
     /**
-     * Generate natural language answer using LLM
+     * Run blocking retrieval (embedding, vector search) on a virtual thread and wait at most until the deadline.
+     * Giving up doesn't interrupt the work, so it must be bounded by the same deadline itself (the embedding
+     * call's read timeout, the search's statement_timeout) or it keeps running after the response is sent.
      */
-    private Mono<Map<String, Object>> generateNaturalAnswer(String question, String data, String sourceType) {
-        return generateNaturalAnswer(question, data, sourceType, null);
+    private <T> T withinDeadline(Deadline deadline, Callable<T> work) throws Exception {
+        try {
+            return deadline.await(retrievalExecutor.submit(work));
+        } catch (TimeoutException e) {
+            System.err.println("⏱️ Retrieval exceeded the query deadline");
+            throw e;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
     }
 
-    private Mono<Map<String, Object>> generateNaturalAnswer(String question, String data, String sourceType, List<Map<String, Object>> sourceData) {
-        ConfigsEntity config = configsService.getLatestConfig();
-        String apiUrl = config.getLlmSummarizerUrl();
-        String apiKey = config.getLlmApiKey();
-        String model = config.getLlmModel();
-
-        String prompt = buildAnswerPrompt(question, data, sourceType);
+    /**
+     * Shed by admission control; the controller turns this into 429 with Retry-After
+     */
+    private Map<String, Object> overloaded(String action) {
+        return Map.of(
+                "answer", "Too many " + action + " questions are being answered right now. Please try again shortly.",
+                "error", true,
+                "overloaded", true,
+                "retry_after_seconds", actionBulkhead.retryAfter().toSeconds()
+        );
+    }
 
-        Map<String, Object> body = Map.of(
-                "model", model,
-                "messages", new Object[]{
-                        Map.of("role", "system", "content", "You are a helpful AI assistant that provides clear, concise answers based on database results."),
-                        Map.of("role", "user", "content", prompt)
-                },
-                "temperature", 0.3,
-                "max_tokens", 800
+    private static Map<String, Object> searchTimedOut(String sourceType) {
+        return Map.of(
+                "answer", "The search did not finish in time. Please try again or narrow the question.",
+                "source_type", sourceType,
+                "partial", true
         );
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(apiKey);
+    /**
+     * Generate natural language answer using LLM
+     */
+    private Mono<Map<String, Object>> generateNaturalAnswer(String question, String data, String sourceType, Deadline deadline) {
+        return generateNaturalAnswer(question, data, sourceType, null, deadline);
+    }
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
+    private Mono<Map<String, Object>> generateNaturalAnswer(String question, String data, String sourceType,
+                                                           List<CommitSearchHit> sourceData, Deadline deadline) {
+        if (deadline.isExpired()) {
+            return Mono.just(partialAnswer(data, sourceType, sourceData));
+        }
 
-        try {
-            ResponseEntity<Map> response = restTemplate.exchange(apiUrl, HttpMethod.POST, entity, Map.class);
-            var choices = (java.util.List<Map<String, Object>>) response.getBody().get("choices");
-
-            if (choices != null && !choices.isEmpty()) {
-                Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-                String answer = message.get("content").toString().trim();
-
-                Map<String, Object> result = new HashMap<>();
-                result.put("answer", answer);
-                result.put("source_type", sourceType);
-
-                // Add sources for semantic/hybrid search
-                if (sourceData != null && !sourceData.isEmpty()) {
-                    List<Map<String, Object>> sources = new ArrayList<>();
-                    for (int i = 0; i < Math.min(5, sourceData.size()); i++) {
-                        Map<String, Object> item = sourceData.get(i);
-                        sources.add(Map.of(
-                                "commit_hash", item.get("commit_hash"),
-                                "author", item.get("author"),
-                                "score", item.get("score")
-                        ));
-                    }
-                    result.put("sources", sources);
-                }
+        String prompt = buildAnswerPrompt(question, data, sourceType);
 
-                return Mono.just(result);
+        try {
+            String answer = llmClient.chat(LlmRouteEntity.TASK_ANSWER, List.of(
+                    Map.of("role", "system", "content", "You are a helpful AI assistant that provides clear, concise answers based on database results."),
+                    Map.of("role", "user", "content", prompt)
+            ), 0.3, 800, deadline);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("answer", answer);
+            result.put("source_type", sourceType);
+
+            // Add sources for semantic/hybrid search
+            if (sourceData != null && !sourceData.isEmpty()) {
+                result.put("sources", sources(sourceData, 5));
             }
+
+            return Mono.just(result);
         } catch (Exception e) {
             System.err.println("Answer generation error: " + e.getMessage());
+            if (deadline.isExpired()) {
+                return Mono.just(partialAnswer(data, sourceType, sourceData));
+            }
         }
 
         return Mono.just(Map.of(
                 "answer", "I found some information but couldn't generate a proper answer. Here's the raw data:\n\n" + data,
-                "source_type", sourceType
+                "source_type", sourceType,
+                "fallback", true
         ));
     }
 
+    /**
+     * What the retrieval found, without an LLM summary, for when the deadline passed before the answer did
+     */
+    private static Map<String, Object> partialAnswer(String data, String sourceType, List<CommitSearchHit> sourceData) {
+        System.err.println("⏱️ Answer generation exceeded the query deadline, returning retrieved data");
+        Map<String, Object> result = new HashMap<>();
+        result.put("answer", "There was no time left to summarize the results. Here is what was found:\n\n" + data);
+        result.put("source_type", sourceType);
+        result.put("partial", true);
+        if (sourceData != null && !sourceData.isEmpty()) {
+            result.put("sources", sources(sourceData, sourceData.size()));
+        }
+        return result;
+    }
+
+    private static List<Map<String, Object>> sources(List<CommitSearchHit> sourceData, int limit) {
+        List<Map<String, Object>> sources = new ArrayList<>();
+        for (int i = 0; i < Math.min(limit, sourceData.size()); i++) {
+            CommitSearchHit item = sourceData.get(i);
+            sources.add(Map.of(
+                    "commit_hash", item.commitHash(),
+                    "author", item.author(),
+                    "score", item.score()
+            ));
+        }
+        return sources;
+    }
+
     /**
      * Build prompt for answer generation
      */
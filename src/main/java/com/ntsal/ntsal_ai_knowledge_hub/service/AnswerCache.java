@@ -0,0 +1,119 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Semantic cache of /api/ai/query answers. A repeated or paraphrased question (same template embedding
+ * as PlanCache, same slot values) is answered from the cache as long as the data it was answered from
+ * hasn't changed: the same search generation (bumped by every commit, summary and embedding write, see
+ * SemanticSearchService.commitsWritten) and the same day (relative dates move at midnight).
+ */
+@Component
+public class AnswerCache {
+    private final SemanticSearchService semanticSearchService;
+    private final Map<String, Entry> entries;
+
+    // Minimum cosine similarity between question templates for a cached answer to be reused (>1 disables the cache)
+    @Value("${ai.answer-cache.similarity-threshold:0.95}")
+    private double similarityThreshold;
+
+    // Upper bound on an answer's age, for changes the freshness token doesn't see (e.g. writes by another instance)
+    @Value("${ai.answer-cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    public AnswerCache(SemanticSearchService semanticSearchService,
+                       @Value("${ai.answer-cache.max-entries:500}") int maxEntries) {
+        this.semanticSearchService = semanticSearchService;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * State of the data an answer was computed from; a cached answer is only served under an equal token
+     */
+    public record Freshness(long embeddingGeneration, LocalDate day) {
+    }
+
+    private record Entry(PlanCache.Key key, QueryPlannerService.Plan plan, Freshness freshness,
+                         Map<String, Object> answer, Instant storedAt) {
+    }
+
+    public boolean isEnabled() {
+        return similarityThreshold <= 1.0;
+    }
+
+    /**
+     * Read before answering, so an answer racing with an ingest is stored under an already outdated token
+     */
+    public Freshness freshness() {
+        return new Freshness(semanticSearchService.embeddingGeneration(), LocalDate.now());
+    }
+
+    public Optional<Map<String, Object>> lookup(PlanCache.Key key, Freshness freshness) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        Instant oldest = Instant.now().minus(Duration.ofSeconds(ttlSeconds));
+        Entry best = null;
+        double bestSimilarity = similarityThreshold;
+        synchronized (entries) {
+            entries.values().removeIf(entry -> !entry.freshness().equals(freshness) || entry.storedAt().isBefore(oldest));
+            for (Entry entry : entries.values()) {
+                if (!entry.key().model().equals(key.model())
+                        || !sameSlotValues(entry.key().slots(), key.slots())
+                        || entry.key().embedding().length != key.embedding().length) {
+                    continue;
+                }
+                double similarity = PlanCache.similarity(entry.key().embedding(), key.embedding());
+                if (similarity >= bestSimilarity) {
+                    best = entry;
+                    bestSimilarity = similarity;
+                }
+            }
+            if (best != null) {
+                entries.get(best.key().slots().template()); // refresh LRU position
+            }
+        }
+        // The plan must not depend on a word of the cached question that this one lacks (e.g. another name)
+        if (best == null || PlanCache.rebind(best.plan(), best.key().slots(), key.slots()).isEmpty()) {
+            return Optional.empty();
+        }
+        System.out.println("💾 Answer cache hit (similarity " + String.format("%.3f", bestSimilarity) +
+                "): \"" + best.key().slots().template() + "\"");
+        Map<String, Object> answer = new HashMap<>(best.answer());
+        answer.put("cached", true);
+        return Optional.of(answer);
+    }
+
+    public void store(PlanCache.Key key, QueryPlannerService.Plan plan, Freshness freshness, Map<String, Object> answer) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key.slots().template(), new Entry(key, plan, freshness, Collections.unmodifiableMap(new HashMap<>(answer)), Instant.now()));
+        }
+    }
+
+    private static boolean sameSlotValues(FastPathPlanner.Slots a, FastPathPlanner.Slots b) {
+        return a.shape().equals(b.shape())
+                && Objects.equals(a.commitHash(), b.commitHash())
+                && Objects.equals(a.author(), b.author())
+                && Objects.equals(a.dateFrom(), b.dateFrom())
+                && Objects.equals(a.dateTo(), b.dateTo());
+    }
+}
@@ -0,0 +1,181 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.client.EmbeddingClient;
+import com.ntsal.ntsal_ai_knowledge_hub.entity.converter.EmbeddingVector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Commit Chunk Service - Embeds individual diff hunks so searches can match specific code changes
+ */
+@Service
+public class CommitChunkService {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EmbeddingClient embeddingClient;
+    private final EmbeddingModelService embeddingModelService;
+    private final SemanticSearchService semanticSearchService;
+
+    @Value("${embedding.chunk.max-tokens:256}")
+    private int maxTokens;
+
+    @Value("${embedding.chunk.max-per-commit:64}")
+    private int maxChunksPerCommit;
+
+    @Value("${embedding.chunk.batch-size:32}")
+    private int batchSize;
+
+    @Value("${embedding.chunk.backfill-limit:200}")
+    private int backfillLimit;
+
+    public CommitChunkService(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              EmbeddingClient embeddingClient,
+                              EmbeddingModelService embeddingModelService,
+                              SemanticSearchService semanticSearchService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.embeddingClient = embeddingClient;
+        this.embeddingModelService = embeddingModelService;
+        this.semanticSearchService = semanticSearchService;
+    }
+
+    /**
+     * Chunk and embed the diff of one commit with the active model, replacing older chunks.
+     * Like the overload below, it leaves cached search results alone: callers storing many commits call
+     * SemanticSearchService.embeddingsWritten() (or commitsWritten()) once they are done.
+     *
+     * @return number of chunks stored
+     */
+    public int embedChunks(Long commitId, String diffText) {
+        return embedChunks(commitId, diffText, embeddingModelService.getActiveModelName());
+    }
+
+    /**
+     * Chunk and embed the diff of one commit with the given model, replacing that model's chunks only;
+     * chunks of a model still being built stay invisible to search until cutover
+     */
+    public int embedChunks(Long commitId, String diffText, String model) {
+        List<DiffChunker.DiffChunk> chunks = DiffChunker.chunk(diffText, maxTokens, maxChunksPerCommit);
+        if (chunks.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, String> textsByHash = new LinkedHashMap<>();
+        for (DiffChunker.DiffChunk chunk : chunks) {
+            textsByHash.putIfAbsent(CommitEmbeddingService.contentHash(chunk.content()), chunk.content());
+        }
+
+        // Hunks already embedded for another commit (cherry-picks, reverts) are reused
+        Map<String, EmbeddingVector> vectorsByHash = findExistingVectors(model, textsByHash.keySet().toArray(new String[0]));
+        List<String> missing = textsByHash.keySet().stream()
+                .filter(hash -> !vectorsByHash.containsKey(hash))
+                .toList();
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            List<String> hashes = missing.subList(from, Math.min(from + batchSize, missing.size()));
+            List<float[]> vectors = embeddingClient.generateEmbeddings(
+                    hashes.stream().map(textsByHash::get).toList(), model);
+            for (int i = 0; i < hashes.size(); i++) {
+                vectorsByHash.put(hashes.get(i), new EmbeddingVector(vectors.get(i)));
+            }
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>(chunks.size());
+        for (DiffChunker.DiffChunk chunk : chunks) {
+            String hash = CommitEmbeddingService.contentHash(chunk.content());
+            batchArgs.add(new Object[]{commitId, chunk.filePath(), chunk.chunkIndex(), chunk.content(),
+                    vectorsByHash.get(hash), model, hash});
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM commit_chunk WHERE commit_id = ? AND embedding_model = ?", commitId, model);
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO commit_chunk (commit_id, file_path, chunk_index, content, embedding_vector,
+                                              embedding_model, content_hash)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                    """, batchArgs);
+        });
+        return chunks.size();
+    }
+
+    private Map<String, EmbeddingVector> findExistingVectors(String model, String[] hashes) {
+        Map<String, EmbeddingVector> vectorsByHash = new HashMap<>();
+        jdbcTemplate.query("""
+                SELECT DISTINCT ON (content_hash) content_hash, embedding_vector
+                FROM commit_chunk
+                WHERE embedding_model = ?
+                  AND content_hash = ANY (?)
+                """,
+                rs -> {
+                    vectorsByHash.put(rs.getString(1), (EmbeddingVector) rs.getObject(2));
+                },
+                model, hashes);
+        return vectorsByHash;
+    }
+
+    /**
+     * Embed chunks for commits that have none for the active model yet
+     * (commits collected before chunking existed, or left over after a model cutover)
+     */
+    public void embedMissingChunks() {
+        String model = embeddingModelService.getActiveModelName();
+        System.out.println("🧩 Embedding diff chunks for up to " + backfillLimit + " commits...");
+        embedPendingChunks(model, backfillLimit);
+    }
+
+    /**
+     * Embed chunks for up to limit commits that have none for the given model
+     *
+     * @return number of commits processed
+     */
+    public int embedPendingChunks(String model, int limit) {
+        List<Map<String, Object>> pending = jdbcTemplate.queryForList("""
+                SELECT c.id, c.diff_text
+                FROM commit c
+                WHERE c.diff_text <> ''
+                  AND NOT EXISTS (SELECT 1
+                                  FROM commit_chunk ch
+                                  WHERE ch.commit_id = c.id
+                                    AND ch.embedding_model = ?)
+                ORDER BY c.id
+                LIMIT ?
+                """, model, limit);
+
+        for (Map<String, Object> row : pending) {
+            try {
+                embedChunks(((Number) row.get("id")).longValue(), (String) row.get("diff_text"), model);
+            } catch (Exception e) {
+                System.err.println("Chunk embedding error for commit " + row.get("id") + ": " + e.getMessage());
+            }
+        }
+        if (!pending.isEmpty() && model.equals(embeddingModelService.getActiveModelName())) {
+            semanticSearchService.embeddingsWritten();
+        }
+        return pending.size();
+    }
+
+    /**
+     * Fraction of commits with a diff that have chunks for the given model
+     */
+    public double getCoverage(String model) {
+        Double coverage = jdbcTemplate.queryForObject("""
+                SELECT COALESCE(AVG(CASE
+                                        WHEN EXISTS (SELECT 1
+                                                     FROM commit_chunk ch
+                                                     WHERE ch.commit_id = c.id
+                                                       AND ch.embedding_model = ?) THEN 1
+                                        ELSE 0 END)::float8, 1)
+                FROM commit c
+                WHERE c.diff_text <> ''
+                """, Double.class, model);
+        return coverage != null ? coverage : 0;
+    }
+}
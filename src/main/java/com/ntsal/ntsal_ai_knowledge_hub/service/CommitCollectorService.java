@@ -6,6 +6,7 @@ import com.ntsal.ntsal_ai_knowledge_hub.client.GitHubClient;
 import com.ntsal.ntsal_ai_knowledge_hub.entity.CommitEntity;
 import com.ntsal.ntsal_ai_knowledge_hub.entity.GithubRepoEntity;
 import com.ntsal.ntsal_ai_knowledge_hub.repo.CommitRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -17,11 +18,22 @@ public class CommitCollectorService {
 
     private final GitHubClient gitHubClient;
     private final CommitRepository commitRepository;
+    private final CommitChunkService commitChunkService;
+    private final SemanticSearchService semanticSearchService;
+    private final GithubRepoService githubRepoService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public CommitCollectorService(GitHubClient gitHubClient, CommitRepository commitRepository) {
+    @Value("${embedding.chunk.embed-on-ingest:true}")
+    private boolean embedChunksOnIngest;
+
+    public CommitCollectorService(GitHubClient gitHubClient, CommitRepository commitRepository,
+                                  CommitChunkService commitChunkService, SemanticSearchService semanticSearchService,
+                                  GithubRepoService githubRepoService) {
         this.gitHubClient = gitHubClient;
         this.commitRepository = commitRepository;
+        this.commitChunkService = commitChunkService;
+        this.semanticSearchService = semanticSearchService;
+        this.githubRepoService = githubRepoService;
     }
     // Every day at 2 AM
     @Scheduled(cron = "0 0 2 * * *")
@@ -38,8 +50,11 @@ public class CommitCollectorService {
                 String repoOwner = repo.getOwner();
                 String repoName = repo.getName();
                 String branch = repo.getBranch() != null ? repo.getBranch() : "main";
+                // Repositories not added through the API may lack a partition; their commits would land in the default one
+                githubRepoService.ensureCommitPartition(repo.getId());
                 var response = gitHubClient.fetchCommits(repoOwner, repoName, token, branch);
                 JsonNode commitsArray = objectMapper.readTree(response.getBody());
+                int saved = 0;
                 for (JsonNode commitNode : commitsArray) {
                     String sha = commitNode.get("sha").asText();
                     if (commitRepository.existsByCommitHash(sha)) continue;
@@ -60,6 +75,22 @@ public class CommitCollectorService {
                     entity.setGithubRepo(repo);
 
                     commitRepository.save(entity);
+                    saved++;
+
+                    // Diff chunks don't depend on the summary, so embed them while the diff is at hand
+                    if (embedChunksOnIngest) {
+                        try {
+                            commitChunkService.embedChunks(entity.getId(), diff);
+                        } catch (Exception e) {
+                            // Left for the nightly chunk backfill
+                            System.err.println("Chunk embedding error for commit " + sha + ": " + e.getMessage());
+                        }
+                    }
+                }
+                if (saved > 0) {
+                    // Once per fetched page: lexical search finds the new commits by their message, chunk search
+                    // by their hunks, before they have a summary or vector
+                    semanticSearchService.commitsWritten();
                 }
             }
             System.out.println("✅ Commits collected successfully.");
@@ -74,7 +105,4 @@ public class CommitCollectorService {
     public void save(CommitEntity commit) {
         commitRepository.save(commit);
     }
-    public List<CommitEntity> searchByEmbedding(String queryEmbedding) {
-        return commitRepository.searchByEmbedding(queryEmbedding);
-    }
 }
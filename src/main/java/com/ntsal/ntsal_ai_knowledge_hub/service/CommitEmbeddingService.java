@@ -1,23 +1,85 @@
 package com.ntsal.ntsal_ai_knowledge_hub.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ntsal.ntsal_ai_knowledge_hub.client.EmbeddingClient;
-import com.ntsal.ntsal_ai_knowledge_hub.entity.CommitEntity;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.BatchSearchRequest;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.CommitSearchHit;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchCursor;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchFilter;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchTuning;
+import com.ntsal.ntsal_ai_knowledge_hub.entity.converter.EmbeddingVector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 @Service
 public class CommitEmbeddingService {
-    private final CommitCollectorService commitCollectorService;
+    // contentHash(buildEmbeddingText(summary_text, feedback)) in SQL; keep the two in step
+    private static final String CONTENT_HASH_SQL =
+            "encode(sha256(convert_to(format(E'Summary: %s\\n\\nFeedback: %s\\n', summary_text, feedback), 'UTF8')), 'hex')";
+
+    private final JdbcTemplate jdbcTemplate;
     private final EmbeddingClient embeddingClient;
+    private final EmbeddingModelService embeddingModelService;
+    private final CommitChunkService commitChunkService;
+    private final SemanticSearchService semanticSearchService;
+    private final VectorIndexService vectorIndexService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Commits read, embedded and written per page by generateEmbeddings
+    @Value("${embedding.generate.batch-size:50}")
+    private int batchSize;
 
-    public CommitEmbeddingService(CommitCollectorService commitCollectorService, EmbeddingClient embeddingClient) {
-        this.commitCollectorService = commitCollectorService;
+    public CommitEmbeddingService(JdbcTemplate jdbcTemplate, EmbeddingClient embeddingClient,
+                                  EmbeddingModelService embeddingModelService, CommitChunkService commitChunkService,
+                                  SemanticSearchService semanticSearchService, VectorIndexService vectorIndexService) {
+        this.jdbcTemplate = jdbcTemplate;
         this.embeddingClient = embeddingClient;
+        this.embeddingModelService = embeddingModelService;
+        this.commitChunkService = commitChunkService;
+        this.semanticSearchService = semanticSearchService;
+        this.vectorIndexService = vectorIndexService;
+    }
+
+    /**
+     * Text embedded for a commit: summary and feedback combined for richer semantic embeddings
+     */
+    public static String buildEmbeddingText(String summaryText, String feedback) {
+        return String.format("""
+                    Summary: %s
+                    
+                    Feedback: %s
+                    """,
+                summaryText,
+                feedback);
+    }
+
+    /**
+     * SHA-256 (hex) of an embedding input, stored next to the vector it produced. CONTENT_HASH_SQL
+     * computes the same value in Postgres.
+     */
+    public static String contentHash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     // Runs every day at 4 AM (after collection and summarization complete)
@@ -29,59 +91,144 @@ public class CommitEmbeddingService {
     // Public async method that can be called from controller
    // @Async
     public void generateEmbeddingsAsync() {
-        List<CommitEntity> commits = commitCollectorService.findAll()
-                .stream()
-                .filter(c -> c.getSummaryText() != null &&
-                             c.getFeedback() != null &&
-                             c.getEmbeddingVector() == null)
-                .toList();
+        String activeModel = embeddingModelService.getActiveModelName();
 
-        System.out.println("🧬 Generating embeddings for " + commits.size() + " commits...");
+        // Embedded before hashes were recorded: trust the vector instead of re-embedding everything
+        int backfilled = jdbcTemplate.update("""
+                UPDATE commit
+                SET embedding_content_hash = %s
+                WHERE embedding_content_hash IS NULL
+                  AND embedding_vector IS NOT NULL
+                  AND embedding_model = ?
+                  AND summary_text IS NOT NULL
+                  AND feedback IS NOT NULL
+                """.formatted(CONTENT_HASH_SQL), activeModel);
+        if (backfilled > 0) {
+            System.out.println("🧬 Recorded content hashes for " + backfilled + " embedded commits");
+        }
 
-        for (CommitEntity commit : commits) {
-            try {
-                // Combine summary and feedback for richer semantic embeddings
-                String combinedText = String.format("""
-                    Summary: %s
-                    
-                    Feedback: %s
-                    """,
-                    commit.getSummaryText(),
-                    commit.getFeedback());
-
-                float[] embedding = embeddingClient.generateEmbedding(combinedText);
-                commit.setEmbeddingVector(new com.pgvector.PGvector(Arrays.toString(embedding)));
-                commitCollectorService.save(commit);
-                System.out.println("✅ Embedding generated for commit " + commit.getCommitHash());
-                Thread.sleep(1500);
-            } catch (Exception e) {
-                e.printStackTrace();
+        // Vectors generated during this run, by the hash of their text
+        Map<String, EmbeddingVector> generatedByHash = new HashMap<>();
+        int embedded = 0;
+        long lastId = 0;
+        while (true) {
+            List<Map<String, Object>> page = findStaleCommits(activeModel, lastId);
+            if (page.isEmpty()) {
+                break;
+            }
+            lastId = ((Number) page.get(page.size() - 1).get("id")).longValue();
+
+            // Identical text elsewhere (cherry-pick, revert, re-summarized to the same text)
+            Map<String, EmbeddingVector> vectorsByHash = findVectorsByHash(activeModel,
+                    page.stream().map(row -> (String) row.get("content_hash")).distinct().toList());
+            vectorsByHash.putAll(generatedByHash);
+
+            List<Object[]> batchArgs = new ArrayList<>(page.size());
+            Map<Long, EmbeddingVector> written = new LinkedHashMap<>();
+            for (Map<String, Object> row : page) {
+                long id = ((Number) row.get("id")).longValue();
+                String hash = (String) row.get("content_hash");
+                try {
+                    EmbeddingVector vector = vectorsByHash.get(hash);
+                    boolean reused = vector != null;
+                    if (!reused) {
+                        String combinedText = buildEmbeddingText((String) row.get("summary_text"), (String) row.get("feedback"));
+                        vector = new EmbeddingVector(embeddingClient.generateEmbedding(combinedText, activeModel));
+                        vectorsByHash.put(hash, vector);
+                        generatedByHash.put(hash, vector);
+                    }
+
+                    batchArgs.add(new Object[]{vector, activeModel, hash, id});
+                    written.put(id, vector);
+                    if (reused) {
+                        System.out.println("♻️ Embedding reused for commit " + row.get("commit_hash"));
+                    } else {
+                        System.out.println("✅ Embedding generated for commit " + row.get("commit_hash"));
+                        Thread.sleep(1500);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+
+            // One write and one search cache invalidation per page
+            if (!batchArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate("""
+                        UPDATE commit
+                        SET embedding_vector       = ?,
+                            embedding_model        = ?,
+                            embedding_content_hash = ?
+                        WHERE id = ?
+                        """, batchArgs);
+                written.forEach((id, vector) -> vectorIndexService.upsert(id, vector, activeModel));
+                semanticSearchService.embeddingsWritten();
+                embedded += batchArgs.size();
             }
         }
 
+        System.out.println("🧬 Embedded " + embedded + " changed commits");
+
+        commitChunkService.embedMissingChunks();
+        vectorIndexService.compactIfNeeded();
+
         System.out.println("🎉 Embedding generation complete!");
     }
 
+    /**
+     * Next keyset page of commits whose vector is missing, from another model, or made from text that has
+     * since changed. The text is hashed in Postgres, so diff_text and unchanged rows never leave the database.
+     */
+    private List<Map<String, Object>> findStaleCommits(String activeModel, long afterId) {
+        return jdbcTemplate.queryForList("""
+                SELECT id, commit_hash, summary_text, feedback, content_hash
+                FROM (SELECT id, commit_hash, summary_text, feedback,
+                             embedding_vector IS NULL AS missing, embedding_model, embedding_content_hash,
+                             %s AS content_hash
+                      FROM commit
+                      WHERE summary_text IS NOT NULL
+                        AND feedback IS NOT NULL
+                        AND id > ?) c
+                WHERE missing
+                   OR embedding_model IS DISTINCT FROM ?
+                   OR embedding_content_hash IS DISTINCT FROM content_hash
+                ORDER BY id
+                LIMIT ?
+                """.formatted(CONTENT_HASH_SQL), afterId, activeModel, batchSize);
+    }
+
+    private Map<String, EmbeddingVector> findVectorsByHash(String activeModel, List<String> hashes) {
+        Map<String, EmbeddingVector> vectorsByHash = new HashMap<>();
+        jdbcTemplate.query("""
+                SELECT DISTINCT ON (embedding_content_hash) embedding_content_hash, embedding_vector
+                FROM commit
+                WHERE embedding_model = ?
+                  AND embedding_vector IS NOT NULL
+                  AND embedding_content_hash = ANY (?)
+                """,
+                rs -> {
+                    vectorsByHash.put(rs.getString(1), (EmbeddingVector) rs.getObject(2));
+                },
+                activeModel, hashes.toArray(new String[0]));
+        return vectorsByHash;
+    }
+
     public Map<String, Object> search(String query) {
-        float[] queryEmbedding = embeddingClient.generateEmbedding(query);
+        return search(query, SearchTuning.DEFAULT);
+    }
 
-        // Convert float[] to String for the query
-        String embeddingString = Arrays.toString(queryEmbedding);
+    public Map<String, Object> search(String query, SearchTuning tuning) {
+        return search(query, tuning, SearchFilter.NONE);
+    }
 
-        // Use the String representation for the search
-        List<CommitEntity> results = commitCollectorService.searchByEmbedding(embeddingString);
+    public Map<String, Object> search(String query, SearchTuning tuning, SearchFilter filter) {
+        float[] queryEmbedding = embeddingClient.generateEmbedding(query);
+
+        List<CommitSearchHit> results = semanticSearchService.hybridSearch(filter, queryEmbedding, 50, tuning);
         System.out.println("🔍 Found " + results.size() + " relevant commits for the query.");
         // Map results to the expected return type
         List<Map<String, Object>> commits = results.stream()
-                .map(c -> Map.<String, Object>of(
-                        "hash", c.getCommitHash(),
-                        "author", c.getAuthor(),
-                        "message", c.getMessage(),
-                        "summary", (c.getSummaryText() != null ? c.getSummaryText() : "No summary available"),
-                        "feedback", (c.getFeedback() != null ? c.getFeedback() : "No feedback available"),
-                        "committedDate", c.getCommittedDate().toString(),
-                        "repoName", (c.getGithubRepo() != null ? c.getGithubRepo().getName() : "Unknown")
-                )).toList();
+                .map(CommitEmbeddingService::toResponse)
+                .toList();
 
         // Return commits without AI analysis for faster response
         Map<String, Object> response = new HashMap<>();
@@ -92,4 +239,74 @@ public class CommitEmbeddingService {
         return response;
     }
 
+    /**
+     * Write one page of search results as {"query", "commits": [...], "nextCursor"}. Commits are
+     * written while the rows are read; nextCursor is null on the last page.
+     */
+    public void writeSearchPage(String query, int pageSize, SearchCursor after, SearchFilter filter,
+                                OutputStream out) throws IOException {
+        float[] queryEmbedding = embeddingClient.generateEmbedding(query);
+
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("query", query);
+            json.writeArrayFieldStart("commits");
+            SearchCursor next = semanticSearchService.searchPage(filter, queryEmbedding, pageSize, after, hit -> {
+                try {
+                    json.writeObject(toResponse(hit));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            json.writeEndArray();
+            json.writeStringField("nextCursor", next != null ? next.encode() : null);
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * Answer several searches with one embedding request and one database round trip
+     *
+     * @return {"results": {id: {"query", "commits"}}, "totalQueries"}
+     */
+    public Map<String, Object> batchSearch(List<BatchSearchRequest.Query> queries, int defaultLimit) {
+        List<float[]> embeddings = embeddingClient.generateEmbeddings(
+                queries.stream().map(BatchSearchRequest.Query::query).toList(),
+                embeddingModelService.getActiveModelName());
+
+        List<SemanticSearchService.VectorQuery> vectorQueries = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            BatchSearchRequest.Query query = queries.get(i);
+            vectorQueries.add(new SemanticSearchService.VectorQuery(embeddings.get(i), query.filter(),
+                    query.limit() != null ? query.limit() : defaultLimit));
+        }
+        List<List<CommitSearchHit>> hits = semanticSearchService.batchSearch(vectorQueries);
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            BatchSearchRequest.Query query = queries.get(i);
+            results.put(query.id() != null ? query.id() : String.valueOf(i), Map.of(
+                    "query", query.query(),
+                    "commits", hits.get(i).stream().map(CommitEmbeddingService::toResponse).toList()));
+        }
+        System.out.println("🔍 Batch search answered " + queries.size() + " queries.");
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results);
+        response.put("totalQueries", queries.size());
+        return response;
+    }
+
+    private static Map<String, Object> toResponse(CommitSearchHit c) {
+        return Map.of(
+                "hash", c.commitHash(),
+                "author", c.author(),
+                "message", c.message(),
+                "summary", (c.summaryText() != null ? c.summaryText() : "No summary available"),
+                "feedback", (c.feedback() != null ? c.feedback() : "No feedback available"),
+                "committedDate", c.committedDate().toString(),
+                "repoName", (c.repoName() != null ? c.repoName() : "Unknown"),
+                "score", c.score()
+        );
+    }
 }
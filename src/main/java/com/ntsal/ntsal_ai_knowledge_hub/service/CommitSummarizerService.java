@@ -11,10 +11,13 @@ public class CommitSummarizerService {
 
     private final CommitCollectorService commitCollectorService;
     private final LLMClient lLMClient;
+    private final SemanticSearchService semanticSearchService;
 
-    public CommitSummarizerService(CommitCollectorService commitCollectorService, LLMClient lLMClient) {
+    public CommitSummarizerService(CommitCollectorService commitCollectorService, LLMClient lLMClient,
+                                   SemanticSearchService semanticSearchService) {
         this.commitCollectorService = commitCollectorService;
         this.lLMClient = lLMClient;
+        this.semanticSearchService = semanticSearchService;
     }
     // Run every day at 3 AM (after commit collector invoked)
     @Scheduled(cron = "0 0 3 * * *")
@@ -31,6 +34,7 @@ public class CommitSummarizerService {
 
         System.out.println("🧠 Summarizing " + unsummarized.size() + " commits...");
 
+        int saved = 0;
         for (CommitEntity commit : unsummarized) {
             try {
                 // Generate summary if missing
@@ -50,10 +54,15 @@ public class CommitSummarizerService {
                 }
 
                 commitCollectorService.save(commit);
+                saved++;
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
+        if (saved > 0) {
+            // Once per run: new summaries change lexical ranking and the text cached hits return
+            semanticSearchService.commitsWritten();
+        }
 
         System.out.println("🎉 All summaries and feedback generated successfully.");
     }
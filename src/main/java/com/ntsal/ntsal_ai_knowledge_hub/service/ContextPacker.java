@@ -0,0 +1,184 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.dto.CommitSearchHit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Packs search hits and SQL rows into answer prompt context within a per-source token budget.
+ * Items go in relevance (input) order; near-identical commits are folded into the first one, long
+ * fields are trimmed, and whatever doesn't fit is counted instead of listed.
+ */
+@Component
+public class ContextPacker {
+    private static final String NO_RESULTS = "No results found.";
+
+    @Value("${ai.context.token-budget.sql:1500}")
+    private int sqlBudget;
+
+    @Value("${ai.context.token-budget.semantic:2000}")
+    private int semanticBudget;
+
+    @Value("${ai.context.token-budget.hybrid:2500}")
+    private int hybridBudget;
+
+    @Value("${ai.context.token-budget.commit:3000}")
+    private int commitBudget;
+
+    // Longest single field (summary, feedback, diff) in characters before it is trimmed; the cells of an SQL table row share it
+    @Value("${ai.context.max-field-chars:800}")
+    private int maxFieldChars;
+
+    // Word-set (Jaccard) similarity of message + summary at which two commits count as duplicates
+    @Value("${ai.context.duplicate-similarity:0.9}")
+    private double duplicateSimilarity;
+
+    /**
+     * Rough token count for budgeting: about four characters per token for English text and code
+     */
+    public static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+
+    /**
+     * Token budget for the answer prompt context of a source type (sql, semantic, hybrid, commit)
+     */
+    public int budget(String sourceType) {
+        return switch (sourceType) {
+            case "sql" -> sqlBudget;
+            case "hybrid" -> hybridBudget;
+            case "commit" -> commitBudget;
+            default -> semanticBudget;
+        };
+    }
+
+    public String packCommits(List<CommitSearchHit> hits, String sourceType) {
+        if (hits == null || hits.isEmpty()) {
+            return NO_RESULTS;
+        }
+
+        // Fold near-identical commits (cherry-picks, reverts of reverts, re-pushed branches) into the first
+        List<CommitSearchHit> kept = new ArrayList<>();
+        List<Set<String>> keptWords = new ArrayList<>();
+        List<List<String>> duplicates = new ArrayList<>();
+        for (CommitSearchHit hit : hits) {
+            Set<String> words = words(Objects.toString(hit.message(), "") + " " + Objects.toString(hit.summaryText(), ""));
+            int match = -1;
+            for (int i = 0; i < kept.size() && match < 0; i++) {
+                if (jaccard(words, keptWords.get(i)) >= duplicateSimilarity) {
+                    match = i;
+                }
+            }
+            if (match >= 0) {
+                duplicates.get(match).add(hit.commitHash());
+            } else {
+                kept.add(hit);
+                keptWords.add(words);
+                duplicates.add(new ArrayList<>());
+            }
+        }
+
+        int budget = budget(sourceType);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Found ").append(hits.size()).append(" relevant commits:\n\n");
+        int used = estimateTokens(sb.toString());
+        int packed = 0;
+        for (int i = 0; i < kept.size(); i++) {
+            String block = formatCommit(packed + 1, kept.get(i), duplicates.get(i));
+            if (used + estimateTokens(block) > budget) {
+                if (packed > 0) {
+                    break;
+                }
+                // The most relevant commit always goes in, cut down to what is left
+                block = trim(block, Math.max(budget - used, maxFieldChars / 4) * 4) + "\n\n";
+            }
+            sb.append(block);
+            used += estimateTokens(block);
+            packed++;
+        }
+        appendOmitted(sb, kept.size() - packed, "commits");
+        return sb.toString();
+    }
+
+    private String formatCommit(int position, CommitSearchHit hit, List<String> duplicates) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("[%d] Commit: %s\n", position, hit.commitHash()));
+        sb.append(String.format("    Author: %s\n", hit.author()));
+        sb.append(String.format("    Date: %s\n", hit.committedDate()));
+        sb.append(String.format("    Message: %s\n", trim(hit.message(), maxFieldChars / 2)));
+        sb.append(String.format("    Summary: %s\n", trim(hit.summaryText(), maxFieldChars)));
+
+        if (hit.matchedFile() != null) {
+            sb.append(String.format("    Matched File: %s\n", hit.matchedFile()));
+        }
+
+        if (hit.feedback() != null && !hit.feedback().isEmpty()) {
+            sb.append(String.format("    Feedback: %s\n", trim(hit.feedback(), maxFieldChars / 2)));
+        }
+
+        if (!duplicates.isEmpty()) {
+            sb.append(String.format("    Same change also in: %s\n", String.join(", ", duplicates)));
+        }
+
+        sb.append(String.format("    Relevance Score: %.3f\n\n", hit.score()));
+        return sb.toString();
+    }
+
+    /**
+     * SQL result rows in the compact layout of SqlResultRenderer, within the budget
+     */
+    public String packRows(List<Map<String, Object>> rows, String sourceType) {
+        return SqlResultRenderer.render(rows, budget(sourceType) * 4, maxFieldChars);
+    }
+
+    /**
+     * Already formatted text (e.g. an MCP tool result), cut at the budget
+     */
+    public String packText(String text, String sourceType) {
+        return trim(text, budget(sourceType) * 4);
+    }
+
+    private static void appendOmitted(StringBuilder sb, int omitted, String what) {
+        if (omitted > 0) {
+            sb.append("... (").append(omitted).append(" more ").append(what).append(" omitted)\n");
+        }
+    }
+
+    private static String trim(String text, int maxChars) {
+        if (text == null || text.length() <= maxChars) {
+            return text;
+        }
+        return text.substring(0, Math.max(0, maxChars - 3)) + "...";
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new HashSet<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{Alnum}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1.0;
+        }
+        int common = 0;
+        for (String word : a) {
+            if (b.contains(word)) {
+                common++;
+            }
+        }
+        return (double) common / (a.size() + b.size() - common);
+    }
+}
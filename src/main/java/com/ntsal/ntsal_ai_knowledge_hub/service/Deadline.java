@@ -0,0 +1,85 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Time budget of one /api/ai/query request. Each stage gets whatever is left: HTTP calls use it as
+ * their read timeout, SQL as its query timeout, and blocking work is awaited for at most that long.
+ */
+public final class Deadline {
+    private static final Duration MAX_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAtNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * A deadline at the given fraction of the remaining time, for a stage that must leave time for later ones
+     */
+    public Deadline share(double fraction) {
+        long now = System.nanoTime();
+        return new Deadline(now + (long) (Math.max(0, expiresAtNanos - now) * fraction));
+    }
+
+    /**
+     * Request factory whose read timeout is the remaining time, at most maxTimeout
+     * (and never 0, which would mean no timeout)
+     */
+    public ClientHttpRequestFactory requestFactory(Duration maxTimeout) {
+        return requestFactoryWithTimeout(remaining().compareTo(maxTimeout) < 0 ? remaining() : maxTimeout);
+    }
+
+    /**
+     * Request factory with a fixed read timeout, for calls made without a deadline
+     */
+    public static ClientHttpRequestFactory requestFactoryWithTimeout(Duration timeout) {
+        if (timeout.compareTo(Duration.ofMillis(1)) < 0) {
+            timeout = Duration.ofMillis(1);
+        }
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(timeout.compareTo(MAX_CONNECT_TIMEOUT) < 0 ? timeout : MAX_CONNECT_TIMEOUT);
+        factory.setReadTimeout(timeout);
+        return factory;
+    }
+
+    /**
+     * JDBC query timeout (whole seconds, at least 1) for the remaining time
+     */
+    public int queryTimeoutSeconds() {
+        return (int) Math.max(1, (remaining().toMillis() + 999) / 1000);
+    }
+
+    /**
+     * Wait for the result until the deadline, then give up with TimeoutException. The work is cancelled but
+     * not interrupted, so a pooled JDBC connection in use is left intact; its result is just discarded.
+     */
+    public <T> T await(Future<T> work) throws InterruptedException, ExecutionException, TimeoutException {
+        try {
+            return work.get(Math.max(0, expiresAtNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            work.cancel(false);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a unified diff into per-file chunks of whole hunks that fit the embedding model's
+ * token window. Hunks larger than the window are split on line boundaries.
+ */
+public final class DiffChunker {
+    // Rough estimate for code; the tokenizer splits identifiers and symbols aggressively
+    public static final int CHARS_PER_TOKEN = 3;
+
+    private static final String FILE_HEADER = "diff --git ";
+    private static final String HUNK_HEADER = "@@";
+
+    private DiffChunker() {
+    }
+
+    public record DiffChunk(String filePath, int chunkIndex, String content) {
+    }
+
+    public static List<DiffChunk> chunk(String diff, int maxTokens, int maxChunks) {
+        List<DiffChunk> chunks = new ArrayList<>();
+        if (diff == null || diff.isBlank()) {
+            return chunks;
+        }
+
+        int maxChars = maxTokens * CHARS_PER_TOKEN;
+        for (FileDiff file : splitFiles(diff)) {
+            String prefix = "File: " + file.path() + "\n";
+            int budget = Math.max(maxChars - prefix.length(), 1);
+            StringBuilder current = new StringBuilder();
+
+            for (String hunk : file.hunks()) {
+                for (String piece : splitOversized(hunk, budget)) {
+                    if (current.length() > 0 && current.length() + piece.length() > budget) {
+                        chunks.add(new DiffChunk(file.path(), chunks.size(), prefix + current));
+                        current.setLength(0);
+                    }
+                    current.append(piece);
+                }
+            }
+            if (current.length() > 0) {
+                chunks.add(new DiffChunk(file.path(), chunks.size(), prefix + current));
+            }
+            if (chunks.size() >= maxChunks) {
+                return new ArrayList<>(chunks.subList(0, maxChunks));
+            }
+        }
+        return chunks;
+    }
+
+    private record FileDiff(String path, List<String> hunks) {
+    }
+
+    private static List<FileDiff> splitFiles(String diff) {
+        List<FileDiff> files = new ArrayList<>();
+        String path = "";
+        List<String> hunks = new ArrayList<>();
+        StringBuilder hunk = null;
+
+        // Trailing newlines would otherwise add an empty line to the last hunk
+        for (String line : diff.split("\n")) {
+            if (line.startsWith(FILE_HEADER)) {
+                if (hunk != null) hunks.add(hunk.toString());
+                if (!hunks.isEmpty()) files.add(new FileDiff(path, hunks));
+                path = parsePath(line);
+                hunks = new ArrayList<>();
+                hunk = null;
+            } else if (line.startsWith(HUNK_HEADER)) {
+                if (hunk != null) hunks.add(hunk.toString());
+                hunk = new StringBuilder().append(line).append('\n');
+            } else if (hunk != null) {
+                hunk.append(line).append('\n');
+            }
+        }
+        if (hunk != null) hunks.add(hunk.toString());
+        if (!hunks.isEmpty()) files.add(new FileDiff(path, hunks));
+
+        // Not a unified diff (or header-only changes such as renames): embed the raw text
+        if (files.isEmpty()) {
+            files.add(new FileDiff(path, List.of(diff)));
+        }
+        return files;
+    }
+
+    private static String parsePath(String fileHeader) {
+        // diff --git a/src/Foo.java b/src/Foo.java
+        int newPath = fileHeader.lastIndexOf(" b/");
+        if (newPath != -1) {
+            return fileHeader.substring(newPath + 3).trim();
+        }
+        return fileHeader.substring(FILE_HEADER.length()).trim();
+    }
+
+    private static List<String> splitOversized(String hunk, int budget) {
+        if (hunk.length() <= budget) {
+            return List.of(hunk);
+        }
+        List<String> pieces = new ArrayList<>();
+        StringBuilder piece = new StringBuilder();
+        for (String line : hunk.split("\n")) {
+            // A single huge line (minified/generated code) is cut hard, leaving room for its newline
+            int cut = Math.max(budget - 1, 1);
+            while (line.length() > cut) {
+                if (piece.length() > 0) {
+                    pieces.add(piece.toString());
+                    piece.setLength(0);
+                }
+                pieces.add(line.substring(0, cut) + "\n");
+                line = line.substring(cut);
+            }
+            if (piece.length() > 0 && piece.length() + line.length() + 1 > budget) {
+                pieces.add(piece.toString());
+                piece.setLength(0);
+            }
+            piece.append(line).append('\n');
+        }
+        if (piece.length() > 0) {
+            pieces.add(piece.toString());
+        }
+        return pieces;
+    }
+}
@@ -0,0 +1,84 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.entity.EmbeddingModelEntity;
+import com.ntsal.ntsal_ai_knowledge_hub.repo.EmbeddingModelRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Embedding Model Service - Tracks which embedding model serves search and which one is being built
+ */
+@Service
+public class EmbeddingModelService {
+    private final EmbeddingModelRepository embeddingModelRepository;
+
+    @Value("${embedding.model.default:all-MiniLM-L6-v2}")
+    private String defaultModelName;
+
+    // Reloaded after activeModelChanged() or the TTL (which covers a cutover run by another instance)
+    @Value("${embedding.model.active-cache-ttl-ms:60000}")
+    private long activeModelCacheTtlMs;
+
+    private record ActiveModelName(String name, long loadedAtNanos) {
+    }
+
+    private final AtomicReference<ActiveModelName> activeModelName = new AtomicReference<>();
+
+    public EmbeddingModelService(EmbeddingModelRepository embeddingModelRepository) {
+        this.embeddingModelRepository = embeddingModelRepository;
+    }
+
+    public List<EmbeddingModelEntity> findAll() {
+        return embeddingModelRepository.findAll();
+    }
+
+    public Optional<EmbeddingModelEntity> getActiveModel() {
+        return embeddingModelRepository.findFirstByStatus(EmbeddingModelEntity.STATUS_ACTIVE);
+    }
+
+    /**
+     * Name of the model whose vectors are stored in commit.embedding_vector.
+     * Query embeddings must be produced with the same model. Cached, as every embedding and search asks.
+     */
+    public String getActiveModelName() {
+        ActiveModelName cached = activeModelName.get();
+        if (cached == null || System.nanoTime() - cached.loadedAtNanos() > activeModelCacheTtlMs * 1_000_000) {
+            cached = new ActiveModelName(getActiveModel()
+                    .map(EmbeddingModelEntity::getModelName)
+                    .orElse(defaultModelName), System.nanoTime());
+            activeModelName.set(cached);
+        }
+        return cached.name();
+    }
+
+    /**
+     * Called after a cutover switched the active model
+     */
+    public void activeModelChanged() {
+        activeModelName.set(null);
+    }
+
+    public Optional<EmbeddingModelEntity> getBuildingModel() {
+        return embeddingModelRepository.findFirstByStatus(EmbeddingModelEntity.STATUS_BUILDING);
+    }
+
+    /**
+     * Register (or resume) a model as the re-embedding target
+     */
+    public EmbeddingModelEntity markBuilding(String modelName, int dimension) {
+        EmbeddingModelEntity model = embeddingModelRepository.findByModelName(modelName)
+                .orElseGet(EmbeddingModelEntity::new);
+        if (model.getId() == null) {
+            model.setModelName(modelName);
+            model.setCreatedAt(LocalDateTime.now());
+        }
+        model.setDimension(dimension);
+        model.setStatus(EmbeddingModelEntity.STATUS_BUILDING);
+        return embeddingModelRepository.save(model);
+    }
+}
@@ -0,0 +1,280 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchFilter;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fast-Path Planner - Deterministic planning for questions whose shape is obvious (a commit hash, a count
+ * of commits by author/date, latest commits, commits about a topic), so they skip the planner LLM call.
+ * <p>
+ * Dates and authors are extracted first and removed from the question; what remains must match one of
+ * the known question shapes exactly, otherwise the question is left to the LLM.
+ */
+@Component
+public class FastPathPlanner {
+
+    /**
+     * A plan with how sure the rules are about it (0..1)
+     */
+    public record ScoredPlan(QueryPlannerService.Plan plan, double confidence) {
+    }
+
+    private record DateRange(LocalDate from, LocalDate to, String phrase) {
+    }
+
+    /**
+     * A question with its commit hash, date phrase and author replaced by placeholders, and the values
+     * taken out. Questions with the same template differ only in those values.
+     *
+     * @param dateFrom   start of the date phrase's range (inclusive), null without one
+     * @param dateTo     end of the range (inclusive), null when open-ended
+     * @param datePhrase the date phrase as written, e.g. "last week"
+     */
+    public record Slots(String template, String commitHash, String author,
+                        LocalDate dateFrom, LocalDate dateTo, String datePhrase) {
+
+        /**
+         * Which slots are filled; a plan can only be re-bound between questions with the same shape
+         */
+        public String shape() {
+            return (commitHash != null ? "H" : "") + (author != null ? "A" : "") + (datePhrase != null ? "D" : "");
+        }
+    }
+
+    private static final int DEFAULT_LATEST_LIMIT = 10;
+    private static final int MAX_LATEST_LIMIT = 50;
+    private static final int LIST_LIMIT = 20;
+
+    private static final String NAME = "([\\p{L}][\\p{L}\\p{N}.-]*)";
+
+    // Hex run of at least git's 7-character short hash with both a digit and a letter, so plain words like
+    // "defaced" and numbers like ticket ids or "1234567" are not taken for hashes
+    private static final Pattern COMMIT_HASH = Pattern.compile(
+            "(?<![0-9a-z])(?=[0-9a-f]*[0-9])(?=[0-9a-f]*[a-f])([0-9a-f]{7,40})(?![0-9a-z])");
+    private static final Pattern COMMIT_WORD = Pattern.compile("\\b(?:commit|sha|hash|revision)\\b");
+
+    private static final String DATE_PREFIX = "(?:(?:from|in|during|over|within|for|since) )?(?:the )?";
+    private static final Pattern LAST_DAYS = Pattern.compile("\\b" + DATE_PREFIX + "(?:last|past) (\\d{1,3}) days?\\b");
+    private static final Pattern LAST_WEEK = Pattern.compile("\\b" + DATE_PREFIX + "(?:last|past) week\\b");
+    private static final Pattern THIS_WEEK = Pattern.compile("\\b" + DATE_PREFIX + "this week\\b");
+    private static final Pattern LAST_MONTH = Pattern.compile("\\b" + DATE_PREFIX + "last month\\b");
+    private static final Pattern THIS_MONTH = Pattern.compile("\\b" + DATE_PREFIX + "this month\\b");
+    private static final Pattern LAST_YEAR = Pattern.compile("\\b" + DATE_PREFIX + "last year\\b");
+    private static final Pattern THIS_YEAR = Pattern.compile("\\b" + DATE_PREFIX + "this year\\b");
+    private static final Pattern TODAY = Pattern.compile("\\b" + DATE_PREFIX + "today\\b");
+    private static final Pattern YESTERDAY = Pattern.compile("\\b" + DATE_PREFIX + "yesterday\\b");
+    private static final Pattern BETWEEN_DATES = Pattern.compile("\\bbetween (\\d{4}-\\d{2}-\\d{2}) and (\\d{4}-\\d{2}-\\d{2})\\b");
+    private static final Pattern SINCE_DATE = Pattern.compile("\\b(?:since|after|from) (\\d{4}-\\d{2}-\\d{2})\\b");
+    private static final Pattern IN_YEAR = Pattern.compile("\\b(?:in|during) (20\\d{2})\\b");
+
+    private static final Pattern AUTHOR_BY = Pattern.compile("\\b(?:by|from) (?:author |user )?" + NAME);
+    private static final Pattern AUTHOR_DID = Pattern.compile("\\b(?:did|has|have) " + NAME +
+            " (?:make|made|do|done|push|pushed|author|authored|create|created|write|written|commit|committed)\\b");
+    private static final Pattern AUTHOR_POSSESSIVE = Pattern.compile("\\b" + NAME + "'s? (?=commits?\\b|work\\b|changes\\b)");
+
+    // Words an author pattern may capture that are not names
+    private static final Set<String> NOT_AUTHORS = Set.of(
+            "a", "an", "the", "me", "us", "we", "i", "you", "my", "our", "all", "any", "each", "this", "that",
+            "last", "past", "today", "yesterday", "date", "repo", "repository", "branch", "file", "commit", "commits");
+
+    private static final Pattern COUNT = Pattern.compile(
+            "^how many commits?(?: (?:are|were|have|has|been|there|made|pushed|in|total|all|did|in total))*$");
+    private static final Pattern LATEST = Pattern.compile(
+            "^(?:(?:show|list|get|give|what are)(?: me)? )?(?:the )?(?:latest|recent|newest|most recent|last)(?: (\\d{1,3}))? commits?$");
+    private static final Pattern LIST = Pattern.compile(
+            "^(?:(?:show|list|get|give|find|what are)(?: me)? )?(?:all )?(?:the )?commits?$");
+    private static final Pattern ABOUT = Pattern.compile(
+            "^(?:(?:find|search|search for|show|list|get|give|what are)(?: me)? )?(?:all )?(?:the )?(?:commits?|changes)" +
+            " (?:about|related to|regarding|concerning|involving|mentioning|touching|that touched|that changed) (.+)$");
+
+    // Topics that name code rather than describe a change are matched against diff hunks
+    private static final Pattern CODE_TOPIC = Pattern.compile(
+            "\\b(?:function|method|class|file|module)\\b|\\w\\.\\w|\\w\\(\\)|\\.(?:java|kt|py|js|ts|go|sql|xml|yml)\\b");
+
+    /**
+     * Plan the question without the LLM, or empty when it doesn't have a recognised shape
+     */
+    public Optional<ScoredPlan> plan(String question) {
+        if (question == null || question.isBlank()) {
+            return Optional.empty();
+        }
+        String text = normalize(question);
+
+        Matcher hash = COMMIT_HASH.matcher(text);
+        if (hash.find()) {
+            // Without the word "commit" a hex token may still be a version or ticket number
+            double confidence = COMMIT_WORD.matcher(text).find() ? 0.95 : 0.7;
+            return Optional.of(new ScoredPlan(
+                    new QueryPlannerService.Plan("retrieve_commit", null, null, null, hash.group(1), SearchFilter.NONE),
+                    confidence));
+        }
+
+        StringBuilder rest = new StringBuilder(text);
+        DateRange dates = extractDates(rest, LocalDate.now(), " ");
+        String author = extractAuthor(rest, " ");
+        String skeleton = rest.toString().replaceAll("\\s+", " ").trim();
+        boolean filtered = dates != null || author != null;
+
+        if (COUNT.matcher(skeleton).matches()) {
+            return sqlPlan("SELECT COUNT(*) FROM commit" + where(author, dates), 0.95);
+        }
+        Matcher latest = LATEST.matcher(skeleton);
+        if (latest.matches()) {
+            int limit = latest.group(1) != null ?
+                    Math.min(Math.max(Integer.parseInt(latest.group(1)), 1), MAX_LATEST_LIMIT) : DEFAULT_LATEST_LIMIT;
+            return sqlPlan(listSql(author, dates, limit), 0.9);
+        }
+        if (filtered && LIST.matcher(skeleton).matches()) {
+            return sqlPlan(listSql(author, dates, LIST_LIMIT), 0.85);
+        }
+        Matcher about = ABOUT.matcher(skeleton);
+        if (about.matches()) {
+            String topic = about.group(1).trim();
+            if (filtered) {
+                SearchFilter filter = new SearchFilter(author, null,
+                        dates != null ? dates.from() : null, dates != null ? dates.to() : null, null);
+                return Optional.of(new ScoredPlan(
+                        new QueryPlannerService.Plan("hybrid_search", null, "summary_text", topic, null, filter), 0.85));
+            }
+            String field = CODE_TOPIC.matcher(topic).find() ? "diff_text" : "summary_text";
+            return Optional.of(new ScoredPlan(
+                    new QueryPlannerService.Plan("semantic_search", null, field, topic, null, SearchFilter.NONE), 0.85));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Split a question into its template and slot values (see Slots)
+     */
+    public Slots slots(String question) {
+        StringBuilder text = new StringBuilder(normalize(question != null ? question : ""));
+        Matcher hash = COMMIT_HASH.matcher(text);
+        String commitHash = hash.find() ? cut(text, hash, "<hash>", hash.group(1)) : null;
+        DateRange dates = extractDates(text, LocalDate.now(), " <date> ");
+        String author = extractAuthor(text, " <author> ");
+        return new Slots(text.toString().replaceAll("\\s+", " ").trim(), commitHash, author,
+                dates != null ? dates.from() : null,
+                dates != null ? dates.to() : null,
+                dates != null ? dates.phrase() : null);
+    }
+
+    private static String normalize(String question) {
+        return question.toLowerCase(Locale.ROOT).trim()
+                .replaceAll("[?.!]+$", "")
+                .replace('’', '\'')
+                .replaceAll("\\s+", " ");
+    }
+
+    private static Optional<ScoredPlan> sqlPlan(String sql, double confidence) {
+        return Optional.of(new ScoredPlan(
+                new QueryPlannerService.Plan("execute_sql", sql, null, null, null, SearchFilter.NONE), confidence));
+    }
+
+    private static String listSql(String author, DateRange dates, int limit) {
+        return "SELECT commit_hash, author, committed_date, message FROM commit" + where(author, dates) +
+                " ORDER BY committed_date DESC LIMIT " + limit;
+    }
+
+    // Only values matched by NAME or parsed as dates reach the SQL text, so nothing needs quoting
+    private static String where(String author, DateRange dates) {
+        List<String> predicates = new ArrayList<>();
+        if (author != null) {
+            predicates.add("LOWER(author) LIKE '%" + author + "%'");
+        }
+        if (dates != null && dates.from() != null) {
+            predicates.add("committed_date >= DATE '" + dates.from() + "'");
+        }
+        if (dates != null && dates.to() != null) {
+            predicates.add("committed_date < DATE '" + dates.to().plusDays(1) + "'");
+        }
+        return predicates.isEmpty() ? "" : " WHERE " + String.join(" AND ", predicates);
+    }
+
+    /**
+     * Find the first date phrase, remove it from text and return its inclusive range
+     */
+    private static DateRange extractDates(StringBuilder text, LocalDate today, String placeholder) {
+        Matcher m;
+        try {
+            if ((m = BETWEEN_DATES.matcher(text)).find()) {
+                return cut(text, m, placeholder, range(m, LocalDate.parse(m.group(1)), LocalDate.parse(m.group(2))));
+            }
+            if ((m = SINCE_DATE.matcher(text)).find()) {
+                return cut(text, m, placeholder, range(m, LocalDate.parse(m.group(1)), null));
+            }
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+        if ((m = LAST_DAYS.matcher(text)).find()) {
+            return cut(text, m, placeholder, range(m, today.minusDays(Long.parseLong(m.group(1))), today));
+        }
+        if ((m = LAST_WEEK.matcher(text)).find()) {
+            return cut(text, m, placeholder, range(m, today.minusDays(7), today));
+        }
+        if ((m = THIS_WEEK.matcher(text)).find()) {
+            return cut(text, m, placeholder, range(m, today.with(DayOfWeek.MONDAY), today));
+        }
+        if ((m = LAST_MONTH.matcher(text)).find()) {
+            LocalDate start = today.minusMonths(1).withDayOfMonth(1);
+            return cut(text, m, placeholder, range(m, start, start.plusMonths(1).minusDays(1)));
+        }
+        if ((m = THIS_MONTH.matcher(text)).find()) {
+            return cut(text, m, placeholder, range(m, today.withDayOfMonth(1), today));
+        }
+        if ((m = LAST_YEAR.matcher(text)).find()) {
+            LocalDate start = today.minusYears(1).withDayOfYear(1);
+            return cut(text, m, placeholder, range(m, start, start.plusYears(1).minusDays(1)));
+        }
+        if ((m = THIS_YEAR.matcher(text)).find()) {
+            return cut(text, m, placeholder, range(m, today.withDayOfYear(1), today));
+        }
+        if ((m = YESTERDAY.matcher(text)).find()) {
+            return cut(text, m, placeholder, range(m, today.minusDays(1), today.minusDays(1)));
+        }
+        if ((m = TODAY.matcher(text)).find()) {
+            return cut(text, m, placeholder, range(m, today, today));
+        }
+        if ((m = IN_YEAR.matcher(text)).find()) {
+            LocalDate start = LocalDate.of(Integer.parseInt(m.group(1)), 1, 1);
+            return cut(text, m, placeholder, range(m, start, start.plusYears(1).minusDays(1)));
+        }
+        return null;
+    }
+
+    /**
+     * Find the author of "by X", "did X make" or "X's commits", remove the phrase from text and return X
+     */
+    private static String extractAuthor(StringBuilder text, String placeholder) {
+        for (Pattern pattern : List.of(AUTHOR_DID, AUTHOR_BY, AUTHOR_POSSESSIVE)) {
+            Matcher m = pattern.matcher(text);
+            while (m.find()) {
+                String name = m.group(1).replaceAll("[.-]+$", "");
+                if (!name.isEmpty() && !NOT_AUTHORS.contains(name)) {
+                    cut(text, m, placeholder, null);
+                    return name;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static DateRange range(Matcher match, LocalDate from, LocalDate to) {
+        return new DateRange(from, to, match.group().trim());
+    }
+
+    private static <T> T cut(StringBuilder text, Matcher match, String placeholder, T value) {
+        text.replace(match.start(), match.end(), placeholder);
+        return value;
+    }
+}
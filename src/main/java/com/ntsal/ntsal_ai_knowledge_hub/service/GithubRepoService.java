@@ -3,17 +3,27 @@ package com.ntsal.ntsal_ai_knowledge_hub.service;
 import com.ntsal.ntsal_ai_knowledge_hub.entity.GithubRepoEntity;
 import com.ntsal.ntsal_ai_knowledge_hub.repo.GithubRepoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 
 @Service
 public class GithubRepoService {
     private final GithubRepoRepository githubRepoRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SemanticSearchService semanticSearchService;
 
     @Autowired
-    public GithubRepoService(GithubRepoRepository githubRepoRepository) {
+    public GithubRepoService(GithubRepoRepository githubRepoRepository, JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate, SemanticSearchService semanticSearchService) {
         this.githubRepoRepository = githubRepoRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.semanticSearchService = semanticSearchService;
     }
 
   //  @Cacheable("allGithubRepos")
@@ -25,11 +35,49 @@ public class GithubRepoService {
         return githubRepoRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Save the repository and create its commit partition in the same transaction
+     */
+    @Transactional
     public GithubRepoEntity createRepo(GithubRepoEntity repo) {
-        return githubRepoRepository.save(repo);
+        GithubRepoEntity saved = githubRepoRepository.save(repo);
+        ensureCommitPartition(saved.getId());
+        semanticSearchService.repositoriesChanged();
+        return saved;
     }
 
+    /**
+     * Create the repository's commit partition if it is missing (e.g. a repository inserted by SQL),
+     * moving its commits out of the default partition
+     */
+    public void ensureCommitPartition(Long repoId) {
+        jdbcTemplate.queryForList("SELECT public.ensure_commit_partition(?)", repoId);
+    }
+
+    /**
+     * Delete the repository with its commits, their chunks and staged vectors. commit_chunk and
+     * commit_embedding_staging have no foreign key to the partitioned commit table, so nothing cascades to them.
+     */
     public void deleteRepo(Long id) {
-        githubRepoRepository.deleteById(id);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("""
+                    DELETE FROM commit_chunk ch
+                    USING commit c
+                    WHERE c.id = ch.commit_id
+                      AND c.github_repo_id = ?
+                    """, id);
+            jdbcTemplate.update("""
+                    DELETE FROM commit_embedding_staging s
+                    USING commit c
+                    WHERE c.id = s.commit_id
+                      AND c.github_repo_id = ?
+                    """, id);
+            jdbcTemplate.queryForList("SELECT public.drop_commit_partition(?)", id);
+            // Commits still in the default partition
+            jdbcTemplate.update("DELETE FROM commit WHERE github_repo_id = ?", id);
+            githubRepoRepository.deleteById(id);
+        });
+        semanticSearchService.repositoriesChanged();
+        semanticSearchService.commitsWritten();
     }
 }
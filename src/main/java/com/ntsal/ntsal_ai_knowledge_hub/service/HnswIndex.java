@@ -0,0 +1,378 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory HNSW graph for cosine nearest-neighbour search. Vectors are stored unit-normalised in a
+ * single primitive array, so cosine similarity is a dot product and there is no per-vector object.
+ * <p>
+ * Searches share a read lock and inserts take the write lock. Re-adding an id tombstones its old node;
+ * tombstoned nodes still route searches but never appear in results, and are dropped on rebuild.
+ */
+public final class HnswIndex {
+
+    public record Hit(long id, double score) {
+    }
+
+    private record Candidate(int node, float distance) {
+    }
+
+    private static final Comparator<Candidate> NEAREST_FIRST = Comparator.comparingDouble(Candidate::distance);
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> nodesById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+
+    private float[] vectors;
+    private long[] ids;
+    // links[node][level] = {count, neighbour...}
+    private int[][][] links;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension, int m, int efConstruction, int initialCapacity) {
+        if (dimension < 1 || m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("Invalid HNSW parameters");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+
+        int capacity = Math.max(initialCapacity, 16);
+        this.vectors = new float[capacity * dimension];
+        this.ids = new long[capacity];
+        this.links = new int[capacity][][];
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Number of searchable vectors
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodesById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Share of graph nodes that are tombstones; a rebuild reclaims them
+     */
+    public double tombstoneRatio() {
+        lock.readLock().lock();
+        try {
+            return size == 0 ? 0 : (double) deleted.cardinality() / size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add a vector, replacing any previous vector for the same id
+     */
+    public void add(long id, float[] vector) {
+        float[] unit = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(size + 1);
+            int node = size++;
+            System.arraycopy(unit, 0, vectors, node * dimension, dimension);
+            ids[node] = id;
+            Integer previous = nodesById.put(id, node);
+            if (previous != null) {
+                deleted.set(previous);
+            }
+            insert(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodesById.remove(id);
+            if (node != null) {
+                deleted.set(node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Approximate top-k by cosine similarity. Higher ef explores more of the graph: better recall, slower.
+     */
+    public List<Hit> search(float[] query, int k, int ef) {
+        float[] unit = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint == -1 || k < 1) {
+                return List.of();
+            }
+            int current = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                current = greedyClosest(unit, current, level);
+            }
+            // Tombstones occupy result slots, so widen the beam by the expected number of them
+            int beam = Math.max(ef, k) + (int) Math.ceil(Math.max(ef, k) * (double) deleted.cardinality() / size);
+            List<Candidate> nearest = sortedNearest(searchLayer(unit, current, beam, 0));
+
+            List<Hit> hits = new ArrayList<>(k);
+            for (Candidate candidate : nearest) {
+                if (!deleted.get(candidate.node())) {
+                    hits.add(new Hit(ids[candidate.node()], 1 - candidate.distance()));
+                    if (hits.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------ graph construction
+
+    private void insert(int node) {
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[1 + maxLinks(l)];
+        }
+
+        if (entryPoint == -1) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        float[] unit = Arrays.copyOfRange(vectors, node * dimension, (node + 1) * dimension);
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(unit, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> nearest = sortedNearest(searchLayer(unit, current, efConstruction, l));
+            for (Candidate neighbour : selectNeighbours(nearest, m)) {
+                connect(node, neighbour.node(), l);
+                connect(neighbour.node(), node, l);
+            }
+            current = nearest.get(0).node();
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Link from -> to; a full neighbour list keeps only its closest entries
+     */
+    private void connect(int from, int to, int level) {
+        int[] list = links[from][level];
+        int count = list[0];
+        int capacity = list.length - 1;
+        if (count < capacity) {
+            list[count + 1] = to;
+            list[0] = count + 1;
+            return;
+        }
+
+        List<Candidate> all = new ArrayList<>(capacity + 1);
+        for (int i = 0; i < capacity; i++) {
+            all.add(new Candidate(list[i + 1], distance(from, list[i + 1])));
+        }
+        all.add(new Candidate(to, distance(from, to)));
+        all.sort(NEAREST_FIRST);
+        for (int i = 0; i < capacity; i++) {
+            list[i + 1] = all.get(i).node();
+        }
+    }
+
+    /**
+     * Neighbour selection heuristic from the HNSW paper: skip a candidate that is closer to an
+     * already selected neighbour than to the base node, so links spread across clusters instead of
+     * all pointing into the nearest one. Remaining slots are filled with the closest skipped candidates.
+     *
+     * @param candidates sorted nearest first by distance to the base node
+     */
+    private List<Candidate> selectNeighbours(List<Candidate> candidates, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        List<Candidate> skipped = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() == max) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (distance(candidate.node(), chosen.node()) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                skipped.add(candidate);
+            }
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < max; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length + (ids.length >> 1));
+        vectors = Arrays.copyOf(vectors, capacity * dimension);
+        ids = Arrays.copyOf(ids, capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    // ------------------------------------------------------------------ graph search
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentDistance = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[current][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                float d = distance(query, neighbours[i]);
+                if (d < currentDistance) {
+                    current = neighbours[i];
+                    currentDistance = d;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one layer; returns up to ef nearest nodes (farthest at the head)
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, int entry, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(NEAREST_FIRST.reversed());
+
+        Candidate start = new Candidate(entry, distance(query, entry));
+        visited.set(entry);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.distance() > results.peek().distance()) {
+                break;
+            }
+            int[] neighbours = links[closest.node()][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float d = distance(query, neighbour);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbour, d);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private static List<Candidate> sortedNearest(PriorityQueue<Candidate> results) {
+        List<Candidate> nearest = new ArrayList<>(results);
+        nearest.sort(NEAREST_FIRST);
+        return nearest;
+    }
+
+    // ------------------------------------------------------------------ distance
+
+    // Cosine distance as computed by pgvector's <=>; vectors are already unit length
+    private float distance(float[] query, int node) {
+        return 1 - dot(query, 0, vectors, node * dimension, dimension);
+    }
+
+    private float distance(int a, int b) {
+        return 1 - dot(vectors, a * dimension, vectors, b * dimension, dimension);
+    }
+
+    // Four independent sums let the JIT pipeline the multiply-adds
+    private static float dot(float[] a, int offsetA, float[] b, int offsetB, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[offsetA + i] * b[offsetB + i];
+            s1 += a[offsetA + i + 1] * b[offsetB + i + 1];
+            s2 += a[offsetA + i + 2] * b[offsetB + i + 2];
+            s3 += a[offsetA + i + 3] * b[offsetB + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[offsetA + i] * b[offsetB + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected a " + dimension + "-d vector but got " + vector.length);
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] unit = vector.clone();
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < unit.length; i++) {
+                unit[i] *= scale;
+            }
+        }
+        return unit;
+    }
+}
@@ -0,0 +1,72 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.entity.ConfigsEntity;
+import com.ntsal.ntsal_ai_knowledge_hub.repo.LlmRouteRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LLM Route Service - Resolves which endpoints and models serve each LLM task (see llm_route)
+ */
+@Service
+public class LlmRouteService {
+    private final LlmRouteRepository llmRouteRepository;
+    private final ConfigsService configsService;
+
+    // llm_route and configs are edited in the database, so resolved routes are reloaded after this long
+    @Value("${llm.route.cache-ttl-ms:60000}")
+    private long routeCacheTtlMs;
+
+    private record TaskRoutes(List<Route> routes, long loadedAtNanos) {
+    }
+
+    private final Map<String, TaskRoutes> routesByTask = new ConcurrentHashMap<>();
+
+    public LlmRouteService(LlmRouteRepository llmRouteRepository, ConfigsService configsService) {
+        this.llmRouteRepository = llmRouteRepository;
+        this.configsService = configsService;
+    }
+
+    /**
+     * One endpoint of a task's chain; timeoutMs is null when the route doesn't set one
+     */
+    public record Route(String url, String apiKey, String model, Integer timeoutMs) {
+    }
+
+    /**
+     * Called after llm_route or configs rows were changed; otherwise changes are picked up within the TTL
+     */
+    public void routesChanged() {
+        routesByTask.clear();
+    }
+
+    /**
+     * The task's enabled routes in priority order, or the configs row's endpoint and model when it has none
+     */
+    public List<Route> routes(String task) {
+        TaskRoutes cached = routesByTask.get(task);
+        if (cached == null || System.nanoTime() - cached.loadedAtNanos() > routeCacheTtlMs * 1_000_000) {
+            cached = new TaskRoutes(loadRoutes(task), System.nanoTime());
+            routesByTask.put(task, cached);
+        }
+        return cached.routes();
+    }
+
+    private List<Route> loadRoutes(String task) {
+        List<Route> routes = llmRouteRepository.findByTaskAndEnabledTrueOrderByPriorityAsc(task).stream()
+                .map(route -> new Route(route.getUrl(), route.getApiKey(), route.getModel(), route.getTimeoutMs()))
+                .toList();
+        if (!routes.isEmpty()) {
+            return routes;
+        }
+        ConfigsEntity config = configsService.getLatestConfig();
+        if (config == null) {
+            return List.of();
+        }
+        return List.of(new Route(config.getLlmSummarizerUrl(), config.getLlmApiKey(), config.getLlmModel(), null));
+    }
+}
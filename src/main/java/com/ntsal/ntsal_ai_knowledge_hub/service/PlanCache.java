@@ -0,0 +1,294 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.client.EmbeddingClient;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Semantic cache of LLM query plans. A question is reduced to its template (author, dates and commit hash
+ * replaced by placeholders, see FastPathPlanner.Slots) and the template is embedded; a new question whose
+ * template is close enough to a cached one reuses that plan with the new question's slot values bound in.
+ */
+@Component
+public class PlanCache {
+    private static final Pattern SQL_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    // Every token counts: short ones ("ui", "db", "ci", "js") are often what tells two questions apart
+    private static final Pattern WORD = Pattern.compile("[\\p{Alnum}_]+");
+
+    private final EmbeddingClient embeddingClient;
+    private final EmbeddingModelService embeddingModelService;
+    private final FastPathPlanner fastPathPlanner;
+    private final Map<String, Entry> entries;
+
+    // Minimum cosine similarity between question templates for a cached plan to be reused (>1 disables the cache)
+    @Value("${planner.cache.similarity-threshold:0.92}")
+    private double similarityThreshold;
+
+    public PlanCache(EmbeddingClient embeddingClient,
+                     EmbeddingModelService embeddingModelService,
+                     FastPathPlanner fastPathPlanner,
+                     @Value("${planner.cache.max-entries:500}") int maxEntries) {
+        this.embeddingClient = embeddingClient;
+        this.embeddingModelService = embeddingModelService;
+        this.fastPathPlanner = fastPathPlanner;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Key for a question: its template and slots, plus the template embedding (computed once and
+     * shared by lookup and store)
+     */
+    public record Key(FastPathPlanner.Slots slots, String model, float[] embedding) {
+    }
+
+    private record Entry(Key key, QueryPlannerService.Plan plan) {
+    }
+
+    public boolean isEnabled() {
+        return similarityThreshold <= 1.0;
+    }
+
+    public Optional<Key> key(String question) {
+        return key(question, null);
+    }
+
+    /**
+     * @param deadline bounds the template embedding call; null for no limit
+     */
+    public Optional<Key> key(String question, Deadline deadline) {
+        FastPathPlanner.Slots slots = fastPathPlanner.slots(question);
+        String model = embeddingModelService.getActiveModelName();
+        float[] embedding = normalize(embeddingClient.generateEmbedding(slots.template(), model, deadline));
+        return embedding.length == 0 ? Optional.empty() : Optional.of(new Key(slots, model, embedding));
+    }
+
+    /**
+     * Most similar cached plan with the same slot shape, re-bound to this question's slot values
+     */
+    public Optional<QueryPlannerService.Plan> lookup(Key key) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        Entry best = null;
+        double bestSimilarity = similarityThreshold;
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                if (!entry.key().model().equals(key.model())
+                        || !entry.key().slots().shape().equals(key.slots().shape())
+                        || entry.key().embedding().length != key.embedding().length) {
+                    continue;
+                }
+                double similarity = similarity(entry.key().embedding(), key.embedding());
+                if (similarity >= bestSimilarity) {
+                    best = entry;
+                    bestSimilarity = similarity;
+                }
+            }
+            if (best != null) {
+                entries.get(best.key().slots().template()); // refresh LRU position
+            }
+        }
+        if (best == null) {
+            return Optional.empty();
+        }
+        Optional<QueryPlannerService.Plan> plan = rebind(best.plan(), best.key().slots(), key.slots());
+        if (plan.isPresent()) {
+            System.out.println("🗂️ Plan cache hit (similarity " + String.format("%.3f", bestSimilarity) +
+                    "): \"" + best.key().slots().template() + "\"");
+        }
+        return plan;
+    }
+
+    public void store(Key key, QueryPlannerService.Plan plan) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key.slots().template(), new Entry(key, plan));
+        }
+    }
+
+    /**
+     * Swap the cached question's slot values for the new one's in the plan. Returns empty when a value
+     * can't be located in the plan, so it would otherwise keep answering the old question, or when the plan
+     * uses a word of the cached question (e.g. a name the slots didn't catch) that the new one lacks.
+     */
+    static Optional<QueryPlannerService.Plan> rebind(QueryPlannerService.Plan plan,
+                                                     FastPathPlanner.Slots cached,
+                                                     FastPathPlanner.Slots current) {
+        String sql = plan.sql();
+        String query = plan.query();
+        String commitHash = plan.commitHash();
+        SearchFilter filter = plan.filter() != null ? plan.filter() : SearchFilter.NONE;
+        String author = filter.author();
+        LocalDate from = filter.from();
+        LocalDate to = filter.to();
+
+        Set<String> currentWords = words(current.template());
+        StringBuilder planText = new StringBuilder(" ").append(query).append(' ').append(author).append(' ')
+                .append(filter.repo()).append(' ').append(filter.filePath());
+        Matcher literals = SQL_LITERAL.matcher(sql != null ? sql : "");
+        while (literals.find()) {
+            planText.append(' ').append(literals.group());
+        }
+        for (String word : words(cached.template())) {
+            if (!currentWords.contains(word) && containsIgnoreCase(planText.toString(), word)) {
+                return Optional.empty();
+            }
+        }
+
+        if (cached.commitHash() != null && !cached.commitHash().equals(current.commitHash())) {
+            if (!containsIgnoreCase(commitHash, cached.commitHash()) && !inLiterals(sql, cached.commitHash())) {
+                return Optional.empty();
+            }
+            Map<String, String> swap = Map.of(cached.commitHash(), current.commitHash());
+            commitHash = replace(commitHash, swap);
+            sql = replaceInLiterals(sql, swap);
+        }
+
+        if (cached.author() != null && !cached.author().equals(current.author())) {
+            if (!inLiterals(sql, cached.author()) && !containsIgnoreCase(author, cached.author())
+                    && !containsIgnoreCase(query, cached.author())) {
+                return Optional.empty();
+            }
+            Map<String, String> swap = Map.of(cached.author(), current.author());
+            sql = replaceInLiterals(sql, swap);
+            query = replace(query, swap);
+            author = replace(author, swap);
+        }
+
+        if (cached.datePhrase() != null && !(Objects.equals(cached.dateFrom(), current.dateFrom())
+                && Objects.equals(cached.dateTo(), current.dateTo()))) {
+            // Absolute dates the plan was built with; relative SQL (CURRENT_DATE - INTERVAL ...) has none.
+            // "to" also appears as the exclusive bound to + 1. All swapped in one pass so they can't overlap.
+            Map<String, String> swap = new LinkedHashMap<>();
+            if (cached.dateFrom() != null && current.dateFrom() != null) {
+                swap.put(cached.dateFrom().toString(), current.dateFrom().toString());
+                if (cached.dateFrom().equals(from)) {
+                    from = current.dateFrom();
+                }
+            }
+            if (cached.dateTo() != null && current.dateTo() != null) {
+                swap.putIfAbsent(cached.dateTo().toString(), current.dateTo().toString());
+                swap.putIfAbsent(cached.dateTo().plusDays(1).toString(), current.dateTo().plusDays(1).toString());
+                if (cached.dateTo().equals(to)) {
+                    to = current.dateTo();
+                }
+            }
+            boolean bound = swap.keySet().stream().anyMatch(date -> inLiterals(plan.sql(), date))
+                    || !Objects.equals(from, filter.from()) || !Objects.equals(to, filter.to());
+            sql = replaceInLiterals(sql, swap);
+            boolean sameShape = (cached.dateTo() == null) == (current.dateTo() == null);
+            if (!sameShape || (!bound && !cached.datePhrase().equals(current.datePhrase()))) {
+                return Optional.empty();
+            }
+        }
+
+        try {
+            SearchFilter rebound = new SearchFilter(author, filter.repo(), from, to, filter.filePath());
+            return Optional.of(new QueryPlannerService.Plan(plan.action(), sql, plan.field(), query, commitHash, rebound));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new HashSet<>();
+        Matcher word = WORD.matcher(text.toLowerCase());
+        while (word.find()) {
+            words.add(word.group());
+        }
+        return words;
+    }
+
+    private static boolean containsIgnoreCase(String text, String value) {
+        return text != null && value != null && words(Map.of(value, "")).matcher(text).find();
+    }
+
+    /**
+     * Replace whole-word occurrences of each key (case-insensitive) with its value, in a single pass
+     */
+    private static String replace(String text, Map<String, String> swap) {
+        if (text == null || swap.isEmpty()) {
+            return text;
+        }
+        Map<String, String> byLowerCase = new LinkedHashMap<>();
+        swap.forEach((from, to) -> byLowerCase.put(from.toLowerCase(), to));
+        return words(swap).matcher(text).replaceAll(match ->
+                Matcher.quoteReplacement(byLowerCase.get(match.group().toLowerCase())));
+    }
+
+    /**
+     * Like replace, but only inside SQL string literals so keywords and columns are never touched
+     */
+    private static String replaceInLiterals(String sql, Map<String, String> swap) {
+        if (sql == null) {
+            return null;
+        }
+        return SQL_LITERAL.matcher(sql).replaceAll(literal -> Matcher.quoteReplacement(replace(literal.group(), swap)));
+    }
+
+    private static boolean inLiterals(String sql, String value) {
+        if (sql == null) {
+            return false;
+        }
+        Matcher literal = SQL_LITERAL.matcher(sql);
+        while (literal.find()) {
+            if (containsIgnoreCase(literal.group(), value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Pattern words(Map<String, String> swap) {
+        StringBuilder alternatives = new StringBuilder();
+        for (String value : swap.keySet()) {
+            alternatives.append(alternatives.isEmpty() ? "" : "|").append(Pattern.quote(value));
+        }
+        return Pattern.compile("(?<![\\p{Alnum}_])(?:" + alternatives + ")(?![\\p{Alnum}_])", Pattern.CASE_INSENSITIVE);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) {
+            return new float[0];
+        }
+        float[] unit = new float[vector.length];
+        double length = Math.sqrt(norm);
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / length);
+        }
+        return unit;
+    }
+
+    /**
+     * Cosine similarity of two key embeddings (already unit length)
+     */
+    static double similarity(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
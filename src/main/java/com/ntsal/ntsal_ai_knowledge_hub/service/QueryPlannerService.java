@@ -1,78 +1,100 @@
 package com.ntsal.ntsal_ai_knowledge_hub.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.ntsal.ntsal_ai_knowledge_hub.entity.ConfigsEntity;
-import org.springframework.http.*;
+import com.ntsal.ntsal_ai_knowledge_hub.client.LLMClient;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchFilter;
+import com.ntsal.ntsal_ai_knowledge_hub.entity.LlmRouteEntity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Query Planner Service - Uses LLM to convert natural language to structured query plans
  */
 @Service
 public class QueryPlannerService {
-    private final ConfigsService configsService;
+    private final LLMClient llmClient;
+    private final FastPathPlanner fastPathPlanner;
+    private final PlanCache planCache;
     private final ObjectMapper objectMapper;
-    private final RestTemplate restTemplate;
 
-    public QueryPlannerService(ConfigsService configsService) {
-        this.configsService = configsService;
+    // Fast-path plans below this confidence go to the LLM instead
+    @Value("${planner.fast-path.min-confidence:0.8}")
+    private double fastPathMinConfidence;
+
+    public QueryPlannerService(LLMClient llmClient, FastPathPlanner fastPathPlanner, PlanCache planCache) {
+        this.llmClient = llmClient;
+        this.fastPathPlanner = fastPathPlanner;
+        this.planCache = planCache;
         this.objectMapper = new ObjectMapper();
-        this.restTemplate = new RestTemplate();
     }
 
     /**
      * Plan a query based on natural language input
      * Returns a Plan object with action type and parameters
+     *
+     * @param cacheKey the question's PlanCache key (see PlanCache.key), empty to bypass the plan cache
+     * @param deadline time allowed for the planner LLM call; on expiry the question is searched as asked
      */
-    public Mono<Plan> plan(String question) {
-        ConfigsEntity config = configsService.getLatestConfig();
-        String apiUrl = config.getLlmSummarizerUrl();
-        String apiKey = config.getLlmApiKey();
-        String model = config.getLlmModel();
+    public Mono<Plan> plan(String question, Optional<PlanCache.Key> cacheKey, Deadline deadline) {
+        return planWithoutLlm(question, cacheKey).map(Mono::just)
+                .orElseGet(() -> planWithLlm(question, cacheKey, deadline));
+    }
 
-        String prompt = buildPlannerPrompt(question);
+    /**
+     * The plan from the rule-based fast path or the plan cache, empty when the planner LLM is needed
+     */
+    public Optional<Plan> planWithoutLlm(String question, Optional<PlanCache.Key> cacheKey) {
+        Optional<FastPathPlanner.ScoredPlan> fastPath = fastPath(question);
+        if (fastPath.isPresent()) {
+            System.out.println("⚡ Fast-path plan: " + fastPath.get().plan().action() +
+                    " (confidence " + fastPath.get().confidence() + ")");
+            return Optional.of(fastPath.get().plan());
+        }
 
-        Map<String, Object> body = Map.of(
-                "model", model,
-                "messages", new Object[]{
-                        Map.of("role", "system", "content", "You are a database query assistant. Respond ONLY with valid JSON."),
-                        Map.of("role", "user", "content", prompt)
-                },
-                "temperature", 0.1,
-                "max_tokens", 500
-        );
+        // Paraphrases of an earlier question reuse its plan instead of another LLM call
+        return cacheKey.flatMap(planCache::lookup);
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(apiKey);
+    /**
+     * Ask the planner LLM, for questions planWithoutLlm had no plan for; the plan is cached under cacheKey
+     */
+    public Mono<Plan> planWithLlm(String question, Optional<PlanCache.Key> cacheKey, Deadline deadline) {
+        if (deadline.isExpired()) {
+            System.err.println("⏱️ No time left for the planner, falling back to semantic search");
+            return Mono.just(new Plan("semantic_search", null, "summary_text", question, null, SearchFilter.NONE));
+        }
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
+        String prompt = buildPlannerPrompt(question);
 
         try {
-            ResponseEntity<Map> response = restTemplate.exchange(apiUrl, HttpMethod.POST, entity, Map.class);
-            var choices = (java.util.List<Map<String, Object>>) response.getBody().get("choices");
-            if (choices != null && !choices.isEmpty()) {
-                Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-                String content = message.get("content").toString().trim();
-
-                // Extract JSON from markdown code blocks if present
-                content = extractJsonFromResponse(content);
-
-                Map<String, Object> planMap = objectMapper.readValue(content, Map.class);
-                return Mono.just(Plan.fromMap(planMap));
-            }
+            String content = llmClient.chat(LlmRouteEntity.TASK_PLANNER, List.of(
+                    Map.of("role", "system", "content", "You are a database query assistant. Respond ONLY with valid JSON."),
+                    Map.of("role", "user", "content", prompt)
+            ), 0.1, 500, deadline);
+
+            // Extract JSON from markdown code blocks if present
+            content = extractJsonFromResponse(content);
+
+            Map<String, Object> planMap = objectMapper.readValue(content, Map.class);
+            Plan plan = Plan.fromMap(planMap);
+            cacheKey.ifPresent(key -> planCache.store(key, plan));
+            return Mono.just(plan);
         } catch (Exception e) {
             System.err.println("QueryPlanner error: " + e.getMessage());
             e.printStackTrace();
             // Fallback to semantic search
-            return Mono.just(new Plan("semantic_search", null, "summary_text", question, null));
+            return Mono.just(new Plan("semantic_search", null, "summary_text", question, null, SearchFilter.NONE));
         }
+    }
 
-        return Mono.just(new Plan("semantic_search", null, "summary_text", question, null));
+    private Optional<FastPathPlanner.ScoredPlan> fastPath(String question) {
+        return fastPathPlanner.plan(question).filter(scored -> scored.confidence() >= fastPathMinConfidence);
     }
 
     private String buildPlannerPrompt(String question) {
@@ -83,10 +105,11 @@ public class QueryPlannerService {
             Database Schema:
             - Table: commit
               Columns: id, commit_hash, author, committed_date, message, diff_text, 
-                       summary_text, feedback, embedding_vector, github_repo_id
+                       summary_text, feedback, embedding_vector, github_repo_id, search_tsv
               (NOTE: There is NO author_email column)
+              (search_tsv is an indexed full-text document of message + summary_text)
             - Table: github_repo
-              Columns: id, repo_name, repo_url, owner
+              Columns: id, name, owner, branch
             - Table: configs
               Columns: id, config_key, config_value, created_at
             
@@ -96,12 +119,19 @@ public class QueryPlannerService {
             
             2. "semantic_search" - For finding commits by meaning/content/topic
                Example: {"action":"semantic_search","field":"summary_text","query":"authentication login feature"}
+               Use "field":"diff_text" when the user asks about a specific function, class, file or code change
+               Example: {"action":"semantic_search","field":"diff_text","query":"retry logic in OrderMapper.map"}
             
             3. "retrieve_commit" - For getting specific commit details by hash
                Example: {"action":"retrieve_commit","commit_hash":"abc123"}
             
-            4. "hybrid_search" - Combine SQL filtering + semantic search
-               Example: {"action":"hybrid_search","sql":"SELECT * FROM commit WHERE LOWER(author) LIKE '%%alice%%'","semantic_query":"bug fixes"}
+            4. "hybrid_search" - Semantic search restricted by a filter (no SQL)
+               Example: {"action":"hybrid_search","filter":{"author":"alice","from":"2025-01-01","to":"2025-01-31"},"query":"bug fixes"}
+               Filter fields (all optional, omit unused ones):
+               - "author": part of the author name
+               - "repo": part of the repository name
+               - "from" / "to": inclusive dates as YYYY-MM-DD, resolved from today's date (%s)
+               - "file_path": part of a changed file path, e.g. "OrderMapper.java" or "src/payments/"
             
             IMPORTANT Rules for Author Queries:
             - When filtering by author name, ONLY use: LOWER(author) LIKE '%%name%%'
@@ -110,6 +140,11 @@ public class QueryPlannerService {
             - There is NO author_email column, only 'author'
             - Never use exact match (author = 'name') unless explicitly requested
             
+            IMPORTANT Rules for Keyword Queries (identifiers, ticket numbers, error strings):
+            - Match words in message/summary with: search_tsv @@ plainto_tsquery('simple', 'words')
+            - Example: SELECT COUNT(*) FROM commit WHERE search_tsv @@ plainto_tsquery('simple', 'OrderMapper')
+            - Do NOT use LIKE on message or summary_text
+            
             IMPORTANT Rules for Date Queries:
             - Column name is "committed_date" (NOT commit_date)
             - For "last week": WHERE committed_date >= CURRENT_DATE - INTERVAL '7 days'
@@ -129,7 +164,7 @@ public class QueryPlannerService {
             User question: %s
             
             JSON response:
-            """.formatted(question);
+            """.formatted(LocalDate.now(), question);
     }
 
     private String extractJsonFromResponse(String content) {
@@ -149,15 +184,16 @@ public class QueryPlannerService {
     /**
      * Plan record representing a structured query plan
      */
-    public record Plan(String action, String sql, String field, String query, String commitHash) {
+    public record Plan(String action, String sql, String field, String query, String commitHash, SearchFilter filter) {
         public static Plan fromMap(Map<String, Object> map) {
             String action = (String) map.get("action");
             return new Plan(
                     action,
                     (String) map.getOrDefault("sql", null),
                     (String) map.getOrDefault("field", "summary_text"),
-                    (String) map.getOrDefault("query", null),
-                    (String) map.getOrDefault("commit_hash", null)
+                    (String) map.getOrDefault("query", map.get("semantic_query")),
+                    (String) map.getOrDefault("commit_hash", null),
+                    SearchFilter.fromMap((Map<String, Object>) map.get("filter"))
             );
         }
     }
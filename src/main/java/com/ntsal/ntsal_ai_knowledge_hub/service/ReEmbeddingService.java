@@ -0,0 +1,248 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.client.EmbeddingClient;
+import com.ntsal.ntsal_ai_knowledge_hub.entity.EmbeddingModelEntity;
+import com.ntsal.ntsal_ai_knowledge_hub.entity.converter.EmbeddingVector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Re-Embedding Service - Builds embeddings for a new model version in the background while
+ * search keeps serving the active model, then cuts over atomically once coverage is high enough
+ */
+@Service
+public class ReEmbeddingService {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EmbeddingClient embeddingClient;
+    private final EmbeddingModelService embeddingModelService;
+    private final VectorIndexService vectorIndexService;
+    private final SemanticSearchService semanticSearchService;
+    private final CommitChunkService commitChunkService;
+
+    @Value("${embedding.reembed.batch-size:32}")
+    private int batchSize;
+
+    // Commits whose diff chunks are staged per run (each has up to embedding.chunk.max-per-commit chunks)
+    @Value("${embedding.reembed.chunk-batch-commits:8}")
+    private int chunkBatchCommits;
+
+    @Value("${embedding.reembed.cutover-coverage:0.98}")
+    private double cutoverCoverage;
+
+    public ReEmbeddingService(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              EmbeddingClient embeddingClient,
+                              EmbeddingModelService embeddingModelService,
+                              VectorIndexService vectorIndexService,
+                              SemanticSearchService semanticSearchService,
+                              CommitChunkService commitChunkService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.embeddingClient = embeddingClient;
+        this.embeddingModelService = embeddingModelService;
+        this.vectorIndexService = vectorIndexService;
+        this.semanticSearchService = semanticSearchService;
+        this.commitChunkService = commitChunkService;
+    }
+
+    /**
+     * Start (or resume) re-embedding the corpus with the given model
+     */
+    public EmbeddingModelEntity startReEmbedding(String modelName) {
+        EmbeddingModelEntity active = embeddingModelService.getActiveModel()
+                .orElseThrow(() -> new IllegalStateException("No active embedding model"));
+        if (active.getModelName().equals(modelName)) {
+            throw new IllegalArgumentException("Model " + modelName + " is already active");
+        }
+        embeddingModelService.getBuildingModel()
+                .filter(building -> !building.getModelName().equals(modelName))
+                .ifPresent(building -> {
+                    throw new IllegalStateException("Model " + building.getModelName() + " is already being built");
+                });
+
+        int dimension = embeddingClient.getModelDimension(modelName);
+        // embedding_vector is vector(384); a different dimension needs a schema change, not an online swap
+        if (dimension != active.getDimension()) {
+            throw new IllegalArgumentException("Model " + modelName + " produces " + dimension +
+                    "-d vectors but the embedding column holds " + active.getDimension());
+        }
+
+        System.out.println("🧬 Re-embedding started with model " + modelName);
+        return embeddingModelService.markBuilding(modelName, dimension);
+    }
+
+    /**
+     * Embed the next batch for the model being built. The interval and batch size
+     * throttle the job to the capacity of the embedding service.
+     */
+    @Scheduled(fixedDelayString = "${embedding.reembed.interval-ms:10000}")
+    public void processNextBatch() {
+        embeddingModelService.getBuildingModel().ifPresent(model -> {
+            try {
+                int embedded = embedBatch(model.getModelName());
+                // Diff chunks are staged under the new model too, so chunk search works right after cutover
+                int chunked = commitChunkService.embedPendingChunks(model.getModelName(), chunkBatchCommits);
+                double coverage = getCoverage(model.getModelName());
+                double chunkCoverage = commitChunkService.getCoverage(model.getModelName());
+                if (embedded > 0 || chunked > 0) {
+                    System.out.printf("🧬 Re-embedded %d commits and chunked %d diffs with %s (coverage %.1f%%, chunks %.1f%%)%n",
+                            embedded, chunked, model.getModelName(), coverage * 100, chunkCoverage * 100);
+                }
+                if (coverage >= cutoverCoverage && chunkCoverage >= cutoverCoverage) {
+                    cutover(model.getModelName());
+                }
+            } catch (Exception e) {
+                System.err.println("Re-embedding error: " + e.getMessage());
+            }
+        });
+    }
+
+    private int embedBatch(String modelName) {
+        List<Map<String, Object>> pending = jdbcTemplate.queryForList("""
+                SELECT c.id, c.summary_text, c.feedback
+                FROM commit c
+                WHERE c.summary_text IS NOT NULL
+                  AND c.feedback IS NOT NULL
+                  AND NOT EXISTS (SELECT 1
+                                  FROM commit_embedding_staging s
+                                  WHERE s.commit_id = c.id
+                                    AND s.embedding_model = ?)
+                ORDER BY c.id
+                LIMIT ?
+                """, modelName, batchSize);
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        List<String> hashes = new ArrayList<>(pending.size());
+        Map<String, String> textsByHash = new LinkedHashMap<>();
+        for (Map<String, Object> row : pending) {
+            String text = CommitEmbeddingService.buildEmbeddingText(
+                    (String) row.get("summary_text"), (String) row.get("feedback"));
+            String hash = CommitEmbeddingService.contentHash(text);
+            hashes.add(hash);
+            textsByHash.putIfAbsent(hash, text);
+        }
+
+        // Only texts not already embedded with this model (duplicates across commits) go to the service
+        Map<String, EmbeddingVector> vectorsByHash = findStagedVectors(modelName, textsByHash.keySet());
+        List<String> missing = textsByHash.keySet().stream()
+                .filter(hash -> !vectorsByHash.containsKey(hash))
+                .toList();
+        if (!missing.isEmpty()) {
+            List<float[]> vectors = embeddingClient.generateEmbeddings(
+                    missing.stream().map(textsByHash::get).toList(), modelName);
+            for (int i = 0; i < missing.size(); i++) {
+                vectorsByHash.put(missing.get(i), new EmbeddingVector(vectors.get(i)));
+            }
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            String hash = hashes.get(i);
+            batchArgs.add(new Object[]{pending.get(i).get("id"), modelName, vectorsByHash.get(hash), hash});
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO commit_embedding_staging (commit_id, embedding_model, embedding_vector, content_hash)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (commit_id, embedding_model) DO UPDATE
+                    SET embedding_vector = EXCLUDED.embedding_vector,
+                        content_hash     = EXCLUDED.content_hash
+                """, batchArgs);
+        return pending.size();
+    }
+
+    private Map<String, EmbeddingVector> findStagedVectors(String modelName, Collection<String> hashes) {
+        Map<String, EmbeddingVector> vectorsByHash = new HashMap<>();
+        jdbcTemplate.query("""
+                SELECT DISTINCT ON (content_hash) content_hash, embedding_vector
+                FROM commit_embedding_staging
+                WHERE embedding_model = ?
+                  AND content_hash = ANY (?)
+                """,
+                rs -> {
+                    vectorsByHash.put(rs.getString(1), (EmbeddingVector) rs.getObject(2));
+                },
+                modelName, hashes.toArray(new String[0]));
+        return vectorsByHash;
+    }
+
+    /**
+     * Fraction of embeddable commits that already have a vector for the given model
+     */
+    public double getCoverage(String modelName) {
+        Double coverage = jdbcTemplate.queryForObject("""
+                SELECT COALESCE(COUNT(s.commit_id)::float8 / NULLIF(COUNT(*), 0), 1)
+                FROM commit c
+                LEFT JOIN commit_embedding_staging s
+                       ON s.commit_id = c.id AND s.embedding_model = ?
+                WHERE c.summary_text IS NOT NULL
+                  AND c.feedback IS NOT NULL
+                """, Double.class, modelName);
+        return coverage != null ? coverage : 0;
+    }
+
+    /**
+     * Swap the served vectors to the new model in one transaction. Commits that were not
+     * re-embedded yet lose their (old model) vector and chunks, and are picked up by the nightly embedding job.
+     */
+    public void cutover(String modelName) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int swapped = jdbcTemplate.update("""
+                    UPDATE commit c
+                    SET embedding_vector       = s.embedding_vector,
+                        embedding_model        = s.embedding_model,
+                        embedding_content_hash = s.content_hash
+                    FROM commit_embedding_staging s
+                    WHERE s.commit_id = c.id
+                      AND s.embedding_model = ?
+                    """, modelName);
+            int cleared = jdbcTemplate.update("""
+                    UPDATE commit
+                    SET embedding_vector       = NULL,
+                        embedding_model        = NULL,
+                        embedding_content_hash = NULL
+                    WHERE embedding_vector IS NOT NULL
+                      AND embedding_model IS DISTINCT FROM ?
+                    """, modelName);
+            // The new model's chunks were staged alongside; old ones can't be compared with its query vectors
+            int chunksDropped = jdbcTemplate.update("DELETE FROM commit_chunk WHERE embedding_model <> ?", modelName);
+            jdbcTemplate.update("UPDATE embedding_model SET status = ? WHERE status = ?",
+                    EmbeddingModelEntity.STATUS_RETIRED, EmbeddingModelEntity.STATUS_ACTIVE);
+            jdbcTemplate.update("UPDATE embedding_model SET status = ?, activated_at = now() WHERE model_name = ?",
+                    EmbeddingModelEntity.STATUS_ACTIVE, modelName);
+            jdbcTemplate.update("DELETE FROM commit_embedding_staging WHERE embedding_model = ?", modelName);
+
+            System.out.println("🎉 Embedding cutover to " + modelName + ": " + swapped +
+                    " vectors swapped, " + cleared + " left for re-embedding, " + chunksDropped + " old chunks dropped");
+        });
+        // Before the generation bump, so no new-generation search embeds with or is answered from the old model
+        embeddingModelService.activeModelChanged();
+        vectorIndexService.modelChanged();
+        semanticSearchService.embeddingsWritten();
+        vectorIndexService.rebuildAsync();
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("active", embeddingModelService.getActiveModelName());
+        embeddingModelService.getBuildingModel().ifPresent(model -> {
+            status.put("building", model.getModelName());
+            status.put("coverage", getCoverage(model.getModelName()));
+            status.put("chunkCoverage", commitChunkService.getCoverage(model.getModelName()));
+            status.put("cutoverCoverage", cutoverCoverage);
+        });
+        return status;
+    }
+}
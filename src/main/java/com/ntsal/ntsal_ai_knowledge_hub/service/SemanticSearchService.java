@@ -1,21 +1,430 @@
 package com.ntsal.ntsal_ai_knowledge_hub.service;
 
+import com.ntsal.ntsal_ai_knowledge_hub.dto.CommitSearchHit;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchCursor;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchFilter;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchTuning;
+import com.ntsal.ntsal_ai_knowledge_hub.entity.converter.EmbeddingVector;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Semantic Search Service - Performs vector similarity search using pgvector
  */
 @Service
 public class SemanticSearchService {
+    // Candidates come from the index in the configured precision (ORDER BY filled in from VectorQuantization)
+    // and are re-ranked by exact distance. Limits are parameters, so the statement text never changes.
+    // Every vector search is restricted to the active model: vectors written by an embedding run that raced
+    // a cutover keep their old model until re-embedded, and must not be compared with new query vectors.
+    // Outside that window every stored vector has the active model, so the index scan rejects no rows.
+    private static final String SEARCH_BY_EMBEDDING_SQL = """
+        SELECT *
+        FROM (SELECT
+                  id,
+                  commit_hash,
+                  author,
+                  committed_date,
+                  message,
+                  summary_text,
+                  feedback,
+                  (SELECT r.name FROM github_repo r WHERE r.id = commit.github_repo_id) AS repo_name,
+                  embedding_vector <=> ? AS distance
+              FROM commit
+              WHERE embedding_vector IS NOT NULL
+                AND embedding_model = ?
+              ORDER BY %s
+              LIMIT ?) candidates
+        ORDER BY distance
+        LIMIT ?
+    """;
+
+    private static final String CHUNK_SEARCH_SQL = """
+        WITH hits AS (
+            SELECT *
+            FROM (SELECT
+                      ch.commit_id,
+                      ch.file_path,
+                      ch.embedding_vector <=> ? AS distance
+                  FROM commit_chunk ch
+                  WHERE ch.embedding_model = ?
+                  ORDER BY %s
+                  LIMIT ?) candidates
+            ORDER BY distance
+            LIMIT ?
+        )
+        SELECT
+            c.id,
+            c.commit_hash,
+            c.author,
+            c.committed_date,
+            c.message,
+            c.summary_text,
+            c.feedback,
+            (SELECT r.name FROM github_repo r WHERE r.id = c.github_repo_id) AS repo_name,
+            %s AS score,
+            (array_agg(h.file_path ORDER BY h.distance))[1] AS matched_file
+        FROM hits h
+        JOIN commit c ON c.id = h.commit_id
+        GROUP BY c.id
+        ORDER BY score DESC
+        LIMIT ?
+    """;
+
+    // hnsw.ef_search when neither the request nor search.vector.ef-search sets it
+    private static final int PG_DEFAULT_EF_SEARCH = 40;
+
+    // Reciprocal rank fusion of the vector and lexical candidate lists, in one statement.
+    // Each list contributes 1 / (k + rank); commits found by both rise to the top.
+    private static final String FUSED_SEARCH_SQL = """
+        WITH vector_hits AS (
+            SELECT id, row_number() OVER (ORDER BY distance) AS rank
+            FROM (SELECT id, embedding_vector <=> ? AS distance
+                  FROM commit
+                  WHERE embedding_vector IS NOT NULL
+                    AND embedding_model = ?
+                  ORDER BY %s
+                  LIMIT ?) v
+        ),
+        lexical_hits AS (
+            SELECT id, row_number() OVER (ORDER BY lexical_rank DESC) AS rank
+            FROM (SELECT id, ts_rank_cd(search_tsv, query) AS lexical_rank
+                  FROM commit, to_tsquery('simple', ?) query
+                  WHERE search_tsv @@ query
+                  ORDER BY lexical_rank DESC
+                  LIMIT ?) l
+        ),
+        fused AS (
+            SELECT id, SUM(1.0 / (? + rank)) AS score
+            FROM (SELECT id, rank FROM vector_hits
+                  UNION ALL
+                  SELECT id, rank FROM lexical_hits) r
+            GROUP BY id
+        )
+        SELECT
+            c.id,
+            c.commit_hash,
+            c.author,
+            c.committed_date,
+            c.message,
+            c.summary_text,
+            c.feedback,
+            (SELECT r.name FROM github_repo r WHERE r.id = c.github_repo_id) AS repo_name,
+            f.score
+        FROM fused f
+        JOIN commit c ON c.id = f.id
+        ORDER BY f.score DESC
+        LIMIT ?
+    """;
+
+    // Vector search within a structured filter; the %s predicates come from filterPredicates.
+    // Iterative scans may return candidates slightly out of order, which the outer ORDER BY fixes.
+    private static final String FILTERED_SEARCH_SQL = """
+        SELECT *
+        FROM (SELECT
+                  c.id,
+                  c.commit_hash,
+                  c.author,
+                  c.committed_date,
+                  c.message,
+                  c.summary_text,
+                  c.feedback,
+                  (SELECT r.name FROM github_repo r WHERE r.id = c.github_repo_id) AS repo_name,
+                  c.embedding_vector <=> ? AS distance
+              FROM commit c
+              WHERE c.embedding_vector IS NOT NULL
+                AND c.embedding_model = ?%s
+              ORDER BY %s
+              LIMIT ?) candidates
+        ORDER BY distance, id
+        LIMIT ?
+    """;
+
+    // One page of searchPage from the index: all candidates in (distance, id) order, each row carrying the
+    // farthest candidate distance (the frontier) and the number of candidates the scan returned
+    private static final String PAGE_SEARCH_SQL = """
+        SELECT *, MAX(distance) OVER () AS frontier, COUNT(*) OVER () AS fetched
+        FROM (SELECT
+                  c.id,
+                  c.commit_hash,
+                  c.author,
+                  c.committed_date,
+                  c.message,
+                  c.summary_text,
+                  c.feedback,
+                  (SELECT r.name FROM github_repo r WHERE r.id = c.github_repo_id) AS repo_name,
+                  c.embedding_vector <=> ? AS distance
+              FROM commit c
+              WHERE c.embedding_vector IS NOT NULL
+                AND c.embedding_model = ?%s
+              ORDER BY %s
+              LIMIT ?) candidates
+        ORDER BY distance, id
+    """;
+
+    // The rest of a page by exact distance, without the vector index (run with index scans disabled)
+    private static final String EXACT_PAGE_SQL = """
+        SELECT
+            c.id,
+            c.commit_hash,
+            c.author,
+            c.committed_date,
+            c.message,
+            c.summary_text,
+            c.feedback,
+            (SELECT r.name FROM github_repo r WHERE r.id = c.github_repo_id) AS repo_name,
+            c.embedding_vector <=> ? AS distance
+        FROM commit c
+        WHERE c.embedding_vector IS NOT NULL
+          AND c.embedding_model = ?%s
+        ORDER BY distance, c.id
+        LIMIT ?
+    """;
+
+    private static final Pattern LEXICAL_TOKEN = Pattern.compile("[\\p{L}\\p{N}_]+");
+
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EmbeddingModelService embeddingModelService;
+    private final VectorIndexService vectorIndexService;
+
+    // Chunks fetched per requested commit before aggregating to commits
+    @Value("${search.chunk.candidates-per-result:5}")
+    private int chunkCandidatesPerResult;
+
+    @Value("${search.chunk.aggregation:MAX}")
+    private ChunkAggregation defaultChunkAggregation;
+
+    // Candidates taken from each retriever before fusion
+    @Value("${search.hybrid.candidates:50}")
+    private int hybridCandidates;
+
+    @Value("${search.hybrid.rrf-k:60}")
+    private int rrfK;
+
+    @Value("${search.vector.quantization:NONE}")
+    private VectorQuantization quantization;
+
+    // Quantized candidates fetched per requested row for exact re-ranking
+    @Value("${search.vector.quantization-rerank-factor:4}")
+    private int quantizationRerankFactor;
+
+    // 0 disables the result cache
+    @Value("${search.cache.max-entries:1000}")
+    private int cacheMaxEntries;
+
+    // Repository ids (one commit partition each) for fan-out, reloaded after repositoriesChanged() or the TTL
+    @Value("${search.partition.repo-cache-ttl-ms:60000}")
+    private long repoCacheTtlMs;
+
+    @Value("${search.vector.ef-search:#{null}}")
+    private Integer defaultEfSearch;
+
+    @Value("${search.vector.probes:#{null}}")
+    private Integer defaultProbes;
+
+    // Generation of the stored vectors and commit text, bumped by embeddingsWritten() and commitsWritten().
+    // The serving model is looked up once per generation (model switches only happen at a cutover,
+    // which also bumps it).
+    private final AtomicReference<CacheEpoch> cacheEpoch = new AtomicReference<>(new CacheEpoch(0, null));
+
+    // Guarded by itself; access-ordered, so the eldest entry is the least recently used
+    private final Map<CacheKey, List<CommitSearchHit>> resultCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, List<CommitSearchHit>> eldest) {
+            return size() > cacheMaxEntries;
+        }
+    };
+
+    private record CacheEpoch(long generation, String model) {
+    }
+
+    private record RepoIds(List<Long> ids, long loadedAtNanos) {
+    }
+
+    private final AtomicReference<RepoIds> repoIds = new AtomicReference<>();
+
+    // Shared by all fan-out searches, so together they hold at most this many pooled connections; null without fan-out
+    private final ExecutorService fanOutExecutor;
+
+    private record CacheKey(String search, String vectorHash, List<Object> params, String model, long generation) {
+    }
 
-    public SemanticSearchService(JdbcTemplate jdbcTemplate) {
+    /**
+     * @param fanOutParallelism concurrent partition searches for searches not scoped to repositories;
+     *                          below 2 disables the fan-out
+     */
+    public SemanticSearchService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                 EmbeddingModelService embeddingModelService, VectorIndexService vectorIndexService,
+                                 @Value("${search.partition.fan-out-parallelism:4}") int fanOutParallelism) {
         this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.embeddingModelService = embeddingModelService;
+        this.vectorIndexService = vectorIndexService;
+        this.fanOutExecutor = fanOutParallelism < 2 ? null : Executors.newFixedThreadPool(
+                fanOutParallelism, Thread.ofVirtual().name("search-fan-out-", 0).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (fanOutExecutor != null) {
+            fanOutExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Called after a repository (and so a commit partition) was added or removed
+     */
+    public void repositoriesChanged() {
+        repoIds.set(null);
+    }
+
+    private List<Long> repoIds() {
+        RepoIds cached = repoIds.get();
+        if (cached == null || System.nanoTime() - cached.loadedAtNanos() > repoCacheTtlMs * 1_000_000) {
+            cached = new RepoIds(jdbcTemplate.queryForList("SELECT id FROM github_repo ORDER BY id", Long.class),
+                    System.nanoTime());
+            repoIds.set(cached);
+        }
+        return cached.ids();
+    }
+
+    /**
+     * How chunk scores are combined into a commit score: MAX favours the single best hunk,
+     * SUM favours commits with many matching hunks
+     */
+    public enum ChunkAggregation {
+        MAX("MAX(1 - h.distance)"),
+        SUM("SUM(1 - h.distance)");
+
+        private final String scoreExpression;
+
+        ChunkAggregation(String scoreExpression) {
+            this.scoreExpression = scoreExpression;
+        }
+    }
+
+    /**
+     * Precision of the candidate index (db/20261019_vector_quantization.sql builds the matching one).
+     * The ORDER BY expressions must stay identical to the index expressions for the index to be used.
+     */
+    public enum VectorQuantization {
+        NONE(null),
+        HALFVEC("%s::halfvec(384) <=> ?::halfvec(384)"),
+        BINARY("binary_quantize(%s)::bit(384) <~> binary_quantize(?::vector)");
+
+        private final String candidateDistance;
+
+        VectorQuantization(String candidateDistance) {
+            this.candidateDistance = candidateDistance;
+        }
+
+        boolean quantized() {
+            return candidateDistance != null;
+        }
+
+        // Full precision orders by the exact distance alias, binding the vector only once
+        String candidateOrder(String column) {
+            return quantized() ? candidateDistance.formatted(column) : "distance";
+        }
+    }
+
+    /**
+     * Called after commit or chunk vectors were written (and committed): cached results computed
+     * before the write are never served again
+     */
+    public void embeddingsWritten() {
+        cacheEpoch.updateAndGet(epoch -> new CacheEpoch(epoch.generation() + 1, null));
+        synchronized (resultCache) {
+            resultCache.clear();
+        }
+    }
+
+    /**
+     * Called after commit text that searches read was written (summary, feedback, message: search_tsv ranks
+     * by them and every hit returns them), or commits were added or removed. Cached results are dropped the
+     * same way as for a vector write.
+     */
+    public void commitsWritten() {
+        embeddingsWritten();
+    }
+
+    /**
+     * Current generation of the searchable data; changes whenever embeddingsWritten() or commitsWritten() is called
+     */
+    public long embeddingGeneration() {
+        return cacheEpoch.get().generation();
+    }
+
+    /**
+     * Results of an identical earlier search in the current embedding generation, or compute and remember them.
+     * The generation is read before searching, so a result racing with a write is stored under a key
+     * that is already outdated.
+     */
+    private List<CommitSearchHit> cached(String search, float[] queryEmbedding, List<Object> params,
+                                         Supplier<List<CommitSearchHit>> compute) {
+        if (cacheMaxEntries <= 0) {
+            return compute.get();
+        }
+        CacheEpoch epoch = cacheEpoch.get();
+        if (epoch.model() == null) {
+            CacheEpoch withModel = new CacheEpoch(epoch.generation(), embeddingModelService.getActiveModelName());
+            cacheEpoch.compareAndSet(epoch, withModel);
+            epoch = withModel;
+        }
+        CacheKey key = new CacheKey(search, vectorHash(queryEmbedding), params, epoch.model(), epoch.generation());
+        synchronized (resultCache) {
+            List<CommitSearchHit> results = resultCache.get(key);
+            if (results != null) {
+                return results;
+            }
+        }
+        List<CommitSearchHit> results = List.copyOf(compute.get());
+        synchronized (resultCache) {
+            resultCache.put(key, results);
+        }
+        return results;
+    }
+
+    private static String vectorHash(float[] vector) {
+        ByteBuffer bytes = ByteBuffer.allocate(vector.length * Float.BYTES);
+        bytes.asFloatBuffer().put(vector);
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes.array()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     /**
@@ -25,168 +434,585 @@ public class SemanticSearchService {
      * @param limit Maximum number of results
      * @return List of matching commits with similarity scores
      */
-    public List<Map<String, Object>> searchByEmbedding(float[] queryEmbedding, int limit) {
-        String vectorString = floatArrayToVectorString(queryEmbedding);
+    public List<CommitSearchHit> searchByEmbedding(float[] queryEmbedding, int limit) {
+        return searchByEmbedding(queryEmbedding, limit, SearchTuning.DEFAULT);
+    }
 
-        // Use direct string formatting for both vector and limit to avoid JDBC issues
-        String sql = """
-            SELECT 
-                id, 
-                commit_hash, 
-                author,
-                committed_date,
-                message,
-                summary_text, 
-                feedback,
-                1 - (embedding_vector <=> '%s'::vector) AS score
-            FROM commit
-            WHERE embedding_vector IS NOT NULL
-            ORDER BY embedding_vector <=> '%s'::vector
-            LIMIT %d
-        """.formatted(vectorString, vectorString, limit);
-
-        return jdbcTemplate.query(sql,
-            (rs, rowNum) -> {
-                Map<String, Object> row = new HashMap<>();
-                row.put("id", rs.getLong("id"));
-                row.put("commit_hash", rs.getString("commit_hash"));
-                row.put("author", rs.getString("author"));
-                row.put("committed_date", rs.getTimestamp("committed_date"));
-                row.put("message", rs.getString("message"));
-                row.put("summary_text", rs.getString("summary_text"));
-                row.put("feedback", rs.getString("feedback"));
-                row.put("score", rs.getDouble("score"));
-                return row;
+    /**
+     * Search commits by embedding vector similarity with per-query index settings
+     */
+    public List<CommitSearchHit> searchByEmbedding(float[] queryEmbedding, int limit, SearchTuning tuning) {
+        return searchByEmbedding(queryEmbedding, limit, tuning, null);
+    }
+
+    /**
+     * @param deadline bounds the SQL statements (statement_timeout); null for no limit
+     */
+    public List<CommitSearchHit> searchByEmbedding(float[] queryEmbedding, int limit, SearchTuning tuning,
+                                                   Deadline deadline) {
+        return cached("embedding", queryEmbedding, List.of(limit, tuning),
+                () -> searchByEmbeddingUncached(queryEmbedding, limit, tuning, deadline));
+    }
+
+    private List<CommitSearchHit> searchByEmbeddingUncached(float[] queryEmbedding, int limit, SearchTuning tuning,
+                                                            Deadline deadline) {
+        // probes only means something to an IVFFlat index in Postgres
+        if (tuning.probes() == null) {
+            Optional<List<HnswIndex.Hit>> hits = vectorIndexService.search(queryEmbedding, limit, tuning.efSearch());
+            if (hits.isPresent()) {
+                try {
+                    List<CommitSearchHit> found = findCommitsByHits(hits.get());
+                    if (found.size() < hits.get().size()) {
+                        // The missing hits were evicted; search once more so the next-nearest commits fill in
+                        hits = vectorIndexService.search(queryEmbedding, limit, tuning.efSearch());
+                        found = hits.isPresent() ? findCommitsByHits(hits.get()) : found;
+                    }
+                    return found;
+                } catch (Exception e) {
+                    System.err.println("In-memory search error, falling back to SQL: " + e.getMessage());
+                }
             }
-        );
+        }
+
+        // Bound as EmbeddingVector so the driver sends pgvector's binary format
+        EmbeddingVector vector = new EmbeddingVector(queryEmbedding);
+
+        int candidates = candidateCount(limit);
+        List<Object> args = new ArrayList<>(candidateArgs(vector, candidates));
+        args.add(limit);
+
+        return acrossPartitions(limit,
+            repoId -> filteredSearch(SearchFilter.NONE, repoId, queryEmbedding, limit, tuning, deadline),
+            () -> withTuning(withMinEfSearch(tuning, candidates), deadline, () -> jdbcTemplate.query(
+                SEARCH_BY_EMBEDDING_SQL.formatted(quantization.candidateOrder("embedding_vector")),
+                (rs, rowNum) -> mapHit(rs, null, 1 - rs.getDouble("distance")),
+                args.toArray()
+            )));
     }
 
     /**
-     * Hybrid search: SQL filtering + semantic search
+     * commit is list-partitioned by repository. A search that isn't scoped to repositories runs once per
+     * partition, in parallel, and the per-partition top rows are merged; each branch only touches its own
+     * (smaller) index. With one repository, or search.partition.fan-out-parallelism below 2, the single
+     * statement over all partitions is used instead.
      */
-    public List<Map<String, Object>> hybridSearch(String sqlFilter, float[] queryEmbedding, int limit) {
-        String vectorString = floatArrayToVectorString(queryEmbedding);
+    private List<CommitSearchHit> acrossPartitions(int limit, Function<Long, List<CommitSearchHit>> searchPartition,
+                                                   Supplier<List<CommitSearchHit>> searchAll) {
+        if (fanOutExecutor == null) {
+            return searchAll.get();
+        }
+        List<Long> repoIds = repoIds();
+        if (repoIds.size() < 2) {
+            return searchAll.get();
+        }
+
+        List<Future<List<CommitSearchHit>>> partitions = new ArrayList<>(repoIds.size());
+        try {
+            for (Long repoId : repoIds) {
+                partitions.add(fanOutExecutor.submit(() -> searchPartition.apply(repoId)));
+            }
+            List<CommitSearchHit> merged = new ArrayList<>();
+            for (Future<List<CommitSearchHit>> partition : partitions) {
+                merged.addAll(partition.get());
+            }
+            merged.sort(Comparator.comparingDouble(CommitSearchHit::score).reversed()
+                    .thenComparingLong(CommitSearchHit::id));
+            return merged.size() > limit ? List.copyOf(merged.subList(0, limit)) : merged;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Partition search interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+        } finally {
+            // After a failure, partitions still queued behind other searches are not worth running
+            partitions.forEach(partition -> partition.cancel(false));
+        }
+    }
 
-        // Build dynamic query with WHERE clause from sqlFilter
-        String sql = """
-            SELECT 
-                id, 
-                commit_hash, 
+    /**
+     * Load the commits found by the in-memory index, in hit order. Hits whose row is gone are dropped.
+     */
+    private List<CommitSearchHit> findCommitsByHits(List<HnswIndex.Hit> hits) {
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Double> scoresById = new HashMap<>();
+        for (HnswIndex.Hit hit : hits) {
+            scoresById.put(hit.id(), hit.score());
+        }
+        Map<Long, CommitSearchHit> commitsById = new HashMap<>();
+        jdbcTemplate.query("""
+            SELECT
+                id,
+                commit_hash,
                 author,
                 committed_date,
                 message,
                 summary_text,
                 feedback,
-                1 - (embedding_vector <=> '%s'::vector) AS score
+                (SELECT r.name FROM github_repo r WHERE r.id = commit.github_repo_id) AS repo_name
             FROM commit
-            WHERE embedding_vector IS NOT NULL
-            AND (%s)
-            ORDER BY embedding_vector <=> '%s'::vector
-            LIMIT %d
-        """.formatted(vectorString, extractWhereClause(sqlFilter), vectorString, limit);
+            WHERE id = ANY (?)
+        """,
+            rs -> {
+                long id = rs.getLong("id");
+                commitsById.put(id, mapHit(rs, null, scoresById.get(id)));
+            },
+            (Object) scoresById.keySet().toArray(new Long[0])
+        );
 
-        try {
-            return jdbcTemplate.query(sql,
-                (rs, rowNum) -> {
-                    Map<String, Object> row = new HashMap<>();
-                    row.put("id", rs.getLong("id"));
-                    row.put("commit_hash", rs.getString("commit_hash"));
-                    row.put("author", rs.getString("author"));
-                    row.put("committed_date", rs.getTimestamp("committed_date"));
-                    row.put("message", rs.getString("message"));
-                    row.put("summary_text", rs.getString("summary_text"));
-                    row.put("feedback", rs.getString("feedback"));
-                    row.put("score", rs.getDouble("score"));
-                    return row;
-                }
-            );
-        } catch (Exception e) {
-            System.err.println("Hybrid search error: " + e.getMessage());
-            // Fallback to regular semantic search
-            return searchByEmbedding(queryEmbedding, limit);
+        List<CommitSearchHit> results = new ArrayList<>(hits.size());
+        List<Long> missing = new ArrayList<>();
+        for (HnswIndex.Hit hit : hits) {
+            CommitSearchHit commit = commitsById.get(hit.id());
+            if (commit != null) {
+                results.add(commit);
+            } else {
+                missing.add(hit.id());
+            }
+        }
+        if (!missing.isEmpty()) {
+            // Deleted behind the index's back; evict so later searches don't come up short again
+            System.err.println("🧭 In-memory index returned " + missing.size() + " deleted commits, evicting: " + missing);
+            missing.forEach(vectorIndexService::remove);
+        }
+        return results;
+    }
+
+    private static CommitSearchHit mapHit(ResultSet rs, String matchedFile, double score) throws SQLException {
+        return new CommitSearchHit(
+                rs.getLong("id"),
+                rs.getString("commit_hash"),
+                rs.getString("author"),
+                rs.getObject("committed_date", LocalDateTime.class),
+                rs.getString("message"),
+                rs.getString("summary_text"),
+                rs.getString("feedback"),
+                rs.getString("repo_name"),
+                matchedFile,
+                score);
+    }
+
+    private int candidateCount(int rows) {
+        return quantization.quantized() ? rows * quantizationRerankFactor : rows;
+    }
+
+    // Bind values of "<exact distance> ... embedding_model = ? ORDER BY <candidate order> LIMIT ?"
+    private List<Object> candidateArgs(EmbeddingVector vector, int candidates) {
+        String model = embeddingModelService.getActiveModelName();
+        return quantization.quantized() ?
+                List.of(vector, model, vector, candidates) : List.of(vector, model, candidates);
+    }
+
+    /**
+     * HNSW returns at most ef_search rows, so raise it for this query when more candidates are needed
+     */
+    private SearchTuning withMinEfSearch(SearchTuning tuning, int candidates) {
+        int efSearch = tuning.efSearch() != null ? tuning.efSearch() :
+                defaultEfSearch != null ? defaultEfSearch : PG_DEFAULT_EF_SEARCH;
+        if (tuning.efSearch() != null || candidates <= efSearch) {
+            return tuning;
         }
+        return new SearchTuning(Math.min(candidates, 1000), tuning.probes());
     }
 
     /**
-     * Search by specific field (summary_text or diff_text)
+     * Run a search with hnsw.ef_search / ivfflat.probes applied. The settings are transaction-local,
+     * so they don't leak to other users of the pooled connection.
+     */
+    private <T> T withTuning(SearchTuning tuning, Deadline deadline, Supplier<T> search) {
+        return withTuning(tuning, "off", deadline, search);
+    }
+
+    /**
+     * @param filtered enables pgvector's iterative index scans, so an HNSW scan whose rows are mostly
+     *                 rejected by WHERE predicates keeps going instead of returning too few rows
      */
-    public List<Map<String, Object>> searchByField(String field, float[] queryEmbedding, int limit) {
-        // For now, we only have embedding_vector on the commit table
-        // This can be extended if we add separate embeddings for diff_text
-        return searchByEmbedding(queryEmbedding, limit);
+    private <T> T withTuning(SearchTuning tuning, boolean filtered, Deadline deadline, Supplier<T> search) {
+        return withTuning(tuning, filtered ? "relaxed_order" : "off", deadline, search);
     }
 
     /**
-     * Convert float array to PostgreSQL vector string format
+     * @param iterativeScan hnsw.iterative_scan / ivfflat.iterative_scan mode: off, relaxed_order, or
+     *                      strict_order where the candidates must come back in exact distance order
+     * @param deadline      when set, the statements are cancelled by Postgres (statement_timeout) once it
+     *                      passes, so a search the caller gave up on doesn't keep its connection busy
      */
-    private String floatArrayToVectorString(float[] array) {
-        if (array == null || array.length == 0) {
-            return "[0]";
+    private <T> T withTuning(SearchTuning tuning, String iterativeScan, Deadline deadline, Supplier<T> search) {
+        SearchTuning effective = tuning.orElse(new SearchTuning(defaultEfSearch, defaultProbes));
+        if (effective.isDefault() && "off".equals(iterativeScan) && deadline == null) {
+            return search.get();
         }
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForList("""
+                    SELECT set_config('hnsw.ef_search', COALESCE(?, current_setting('hnsw.ef_search', true), '40'), true),
+                           set_config('ivfflat.probes', COALESCE(?, current_setting('ivfflat.probes', true), '1'), true),
+                           set_config('hnsw.iterative_scan', ?, true),
+                           set_config('ivfflat.iterative_scan', ?, true),
+                           set_config('statement_timeout', COALESCE(?, current_setting('statement_timeout')), true)
+                    """,
+                    effective.efSearch() != null ? effective.efSearch().toString() : null,
+                    effective.probes() != null ? effective.probes().toString() : null,
+                    iterativeScan,
+                    // ivfflat has no strict mode; its lists are re-sorted by the outer ORDER BY anyway
+                    "strict_order".equals(iterativeScan) ? "relaxed_order" : iterativeScan,
+                    deadline != null ? String.valueOf(Math.max(1, deadline.remaining().toMillis())) : null);
+            return search.get();
+        });
+    }
+
+    /**
+     * Semantic search restricted by a structured filter. The filter is compiled to parameterized
+     * predicates (see filterPredicates) evaluated in the same statement as the vector ORDER BY, so the
+     * planner can use the filter indexes for selective filters and the vector index otherwise.
+     */
+    public List<CommitSearchHit> hybridSearch(SearchFilter filter, float[] queryEmbedding, int limit) {
+        return hybridSearch(filter, queryEmbedding, limit, SearchTuning.DEFAULT);
+    }
+
+    public List<CommitSearchHit> hybridSearch(SearchFilter filter, float[] queryEmbedding, int limit,
+                                              SearchTuning tuning) {
+        return hybridSearch(filter, queryEmbedding, limit, tuning, null);
+    }
+
+    /**
+     * @param deadline bounds the SQL statements (statement_timeout); null for no limit
+     */
+    public List<CommitSearchHit> hybridSearch(SearchFilter filter, float[] queryEmbedding, int limit,
+                                              SearchTuning tuning, Deadline deadline) {
+        if (filter == null || filter.isEmpty()) {
+            return searchByEmbedding(queryEmbedding, limit, tuning, deadline);
+        }
+        // A repo filter prunes to the matching partitions; otherwise fan out over all of them
+        return cached("hybrid", queryEmbedding, List.of(filter, limit, tuning), () -> filter.repo() != null ?
+                filteredSearch(filter, null, queryEmbedding, limit, tuning, deadline) :
+                acrossPartitions(limit,
+                        repoId -> filteredSearch(filter, repoId, queryEmbedding, limit, tuning, deadline),
+                        () -> filteredSearch(filter, null, queryEmbedding, limit, tuning, deadline)));
+    }
+
+    /**
+     * @param repoId restricts the search to one commit partition; null searches all
+     */
+    private List<CommitSearchHit> filteredSearch(SearchFilter filter, Long repoId, float[] queryEmbedding, int limit,
+                                                 SearchTuning tuning, Deadline deadline) {
+        EmbeddingVector vector = new EmbeddingVector(queryEmbedding);
+        int candidates = candidateCount(limit);
 
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < array.length; i++) {
-            if (i > 0) sb.append(",");
-            sb.append(array[i]);
+        List<Object> args = new ArrayList<>();
+        args.add(vector);
+        args.add(embeddingModelService.getActiveModelName());
+        StringBuilder predicates = new StringBuilder(filterPredicates(filter, args));
+        if (repoId != null) {
+            predicates.append(" AND c.github_repo_id = ?");
+            args.add(repoId);
+        }
+        if (quantization.quantized()) {
+            args.add(vector);
         }
-        sb.append("]");
-        return sb.toString();
+        args.addAll(List.of(candidates, limit));
+
+        return withTuning(withMinEfSearch(tuning, candidates), true, deadline, () -> jdbcTemplate.query(
+            FILTERED_SEARCH_SQL.formatted(predicates, quantization.candidateOrder("c.embedding_vector")),
+            (rs, rowNum) -> mapHit(rs, null, 1 - rs.getDouble("distance")),
+            args.toArray()
+        ));
+    }
+
+    /**
+     * One query of a batch search
+     */
+    public record VectorQuery(float[] embedding, SearchFilter filter, int limit) {
     }
 
     /**
-     * Extract WHERE clause from SQL query
+     * Run several filtered vector searches in a single statement: one UNION ALL branch per query, each
+     * with its own predicates (so each gets its own plan) and the usual candidate/re-rank pattern.
+     *
+     * @return hits per query, in the order of the queries
      */
-    private String extractWhereClause(String sql) {
-        String upperSql = sql.toUpperCase();
-        int whereIndex = upperSql.indexOf("WHERE");
+    public List<List<CommitSearchHit>> batchSearch(List<VectorQuery> queries) {
+        List<List<CommitSearchHit>> results = new ArrayList<>(queries.size());
+        if (queries.isEmpty()) {
+            return results;
+        }
 
-        if (whereIndex == -1) {
-            return "1=1"; // No WHERE clause, return always true
+        List<String> branches = new ArrayList<>(queries.size());
+        List<Object> args = new ArrayList<>();
+        String model = embeddingModelService.getActiveModelName();
+        int maxCandidates = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            VectorQuery query = queries.get(i);
+            EmbeddingVector vector = new EmbeddingVector(query.embedding());
+            int candidates = candidateCount(query.limit());
+            maxCandidates = Math.max(maxCandidates, candidates);
+
+            args.add(i);
+            args.add(vector);
+            args.add(model);
+            String predicates = filterPredicates(query.filter() != null ? query.filter() : SearchFilter.NONE, args);
+            if (quantization.quantized()) {
+                args.add(vector);
+            }
+            args.addAll(List.of(candidates, query.limit()));
+            branches.add("(SELECT ? AS query_index, hits.* FROM (" +
+                    FILTERED_SEARCH_SQL.formatted(predicates, quantization.candidateOrder("c.embedding_vector")) +
+                    ") hits)");
+            results.add(new ArrayList<>());
         }
 
-        String whereClause = sql.substring(whereIndex + 5).trim();
+        String sql = "SELECT * FROM (" + String.join("\nUNION ALL\n", branches) +
+                ") batch ORDER BY query_index, distance, id";
+        withTuning(withMinEfSearch(SearchTuning.DEFAULT, maxCandidates), true, null, () -> {
+            jdbcTemplate.query(sql,
+                rs -> {
+                    results.get(rs.getInt("query_index")).add(mapHit(rs, null, 1 - rs.getDouble("distance")));
+                },
+                args.toArray()
+            );
+            return null;
+        });
+        return results;
+    }
+
+    /**
+     * One page of (optionally filtered) semantic search, resuming after a cursor. Hits are handed to the
+     * consumer in (distance, id) order as rows arrive, so callers can stream them out.
+     * <p>
+     * The index scan over-fetches in strict distance order, and only rows closer than the farthest
+     * candidate are emitted: no row left out of the candidates can belong before them, so nothing is
+     * skipped by later cursors (within the recall of the index). When that doesn't fill the page (ties at
+     * the frontier, the end of the results, or an iterative scan stopped by hnsw.max_scan_tuples on a deep
+     * page) the rest comes from an exact scan, so a short page always means there are no more results.
+     * With search.vector.quantization the candidates are ordered by quantized distance, and pages served
+     * from the index are approximate.
+     *
+     * @param after cursor from the previous page, null for the first page
+     * @return cursor for the next page, or null when this page was the last
+     */
+    public SearchCursor searchPage(SearchFilter filter, float[] queryEmbedding, int pageSize, SearchCursor after,
+                                   Consumer<CommitSearchHit> consumer) {
+        EmbeddingVector vector = new EmbeddingVector(queryEmbedding);
+        SearchFilter pageFilter = filter != null ? filter : SearchFilter.NONE;
+        int candidates = candidateCount(2 * pageSize);
 
-        // Remove ORDER BY, LIMIT, etc.
-        int orderByIndex = whereClause.toUpperCase().indexOf("ORDER BY");
-        if (orderByIndex != -1) {
-            whereClause = whereClause.substring(0, orderByIndex).trim();
+        List<Object> args = new ArrayList<>();
+        args.add(vector);
+        args.add(embeddingModelService.getActiveModelName());
+        String predicates = pagePredicates(pageFilter, vector, after, args);
+        if (quantization.quantized()) {
+            args.add(vector);
         }
+        args.add(candidates);
 
-        int limitIndex = whereClause.toUpperCase().indexOf("LIMIT");
-        if (limitIndex != -1) {
-            whereClause = whereClause.substring(0, limitIndex).trim();
+        SearchCursor[] last = {after};
+        int[] count = {0};
+        withTuning(withMinEfSearch(SearchTuning.DEFAULT, candidates),
+                quantization.quantized() ? "relaxed_order" : "strict_order", null, () -> {
+            jdbcTemplate.query(
+                PAGE_SEARCH_SQL.formatted(predicates, quantization.candidateOrder("c.embedding_vector")),
+                rs -> {
+                    double distance = rs.getDouble("distance");
+                    boolean settled = quantization.quantized() ?
+                            rs.getInt("fetched") == candidates : distance < rs.getDouble("frontier");
+                    if (count[0] < pageSize && settled) {
+                        consumer.accept(mapHit(rs, null, 1 - distance));
+                        last[0] = new SearchCursor(distance, rs.getLong("id"));
+                        count[0]++;
+                    }
+                },
+                args.toArray()
+            );
+            return null;
+        });
+
+        if (count[0] < pageSize) {
+            exactPage(pageFilter, vector, pageSize, consumer, last, count);
         }
+        return count[0] == pageSize ? last[0] : null;
+    }
+
+    /**
+     * Fill the page after last[0] by exact distance, advancing last and count. Index scans are off for the
+     * statement, so the vector index can't be picked for the ORDER BY; filters still use bitmap index scans.
+     */
+    private void exactPage(SearchFilter filter, EmbeddingVector vector, int pageSize,
+                           Consumer<CommitSearchHit> consumer, SearchCursor[] last, int[] count) {
+        List<Object> args = new ArrayList<>();
+        args.add(vector);
+        args.add(embeddingModelService.getActiveModelName());
+        String predicates = pagePredicates(filter, vector, last[0], args);
+        args.add(pageSize - count[0]);
 
-        return whereClause.isEmpty() ? "1=1" : whereClause;
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForList("SELECT set_config('enable_indexscan', 'off', true)");
+            jdbcTemplate.query(EXACT_PAGE_SQL.formatted(predicates),
+                rs -> {
+                    double distance = rs.getDouble("distance");
+                    consumer.accept(mapHit(rs, null, 1 - distance));
+                    last[0] = new SearchCursor(distance, rs.getLong("id"));
+                    count[0]++;
+                },
+                args.toArray()
+            );
+            return null;
+        });
+    }
+
+    /**
+     * Filter predicates plus the cursor position; (distance, id) is a total order, so ties are neither
+     * repeated nor skipped across pages
+     */
+    private String pagePredicates(SearchFilter filter, EmbeddingVector vector, SearchCursor after, List<Object> args) {
+        StringBuilder predicates = new StringBuilder(filterPredicates(filter, args));
+        if (after != null) {
+            predicates.append(" AND (c.embedding_vector <=> ?, c.id) > (?, ?)");
+            args.addAll(List.of(vector, after.distance(), after.id()));
+        }
+        return predicates.toString();
     }
 
     /**
-     * Format search results into readable text for LLM
+     * AND-ed predicates on commit c for the set filter fields, appending their bind values to args.
+     * Only fixed SQL fragments are emitted, and each matches an index from db/20261019_commit_partitioning.sql
+     * or db/20261019_commit_diff_text_trgm_index.sql. Matching repositories are collected into an array by an
+     * uncorrelated sub-select, which Postgres evaluates once before the scan and uses to prune commit to their
+     * partitions.
      */
-    public String formatSearchResults(List<Map<String, Object>> results) {
-        if (results == null || results.isEmpty()) {
-            return "No results found.";
+    private String filterPredicates(SearchFilter filter, List<Object> args) {
+        StringBuilder sql = new StringBuilder();
+        if (filter.author() != null) {
+            sql.append(" AND lower(c.author) LIKE ?");
+            args.add(containsPattern(filter.author().toLowerCase(Locale.ROOT)));
+        }
+        if (filter.repo() != null) {
+            sql.append(" AND c.github_repo_id = ANY (ARRAY(SELECT r.id FROM github_repo r")
+                    .append(" WHERE lower(r.name) LIKE ?))");
+            args.add(containsPattern(filter.repo().toLowerCase(Locale.ROOT)));
+        }
+        if (filter.from() != null) {
+            sql.append(" AND c.committed_date >= ?");
+            args.add(filter.from().atStartOfDay());
+        }
+        if (filter.to() != null) {
+            sql.append(" AND c.committed_date < ?");
+            args.add(filter.to().plusDays(1).atStartOfDay());
         }
+        if (filter.filePath() != null) {
+            // The diff names every changed file, also for commits whose chunks aren't embedded (yet)
+            sql.append(" AND c.diff_text LIKE ?");
+            args.add(containsPattern(filter.filePath()));
+        }
+        return sql.toString();
+    }
+
+    // Substring LIKE pattern with the user's % and _ taken literally
+    private static String containsPattern(String text) {
+        return "%" + text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("Found ").append(results.size()).append(" relevant commits:\n\n");
+    /**
+     * Lexical (full-text over message and summary) and vector retrieval fused with reciprocal rank fusion.
+     * Catches identifiers, ticket numbers and error strings that cosine similarity alone ranks poorly.
+     */
+    public List<CommitSearchHit> fusedSearch(String queryText, float[] queryEmbedding, int limit) {
+        return fusedSearch(queryText, queryEmbedding, limit, null);
+    }
 
-        for (int i = 0; i < results.size(); i++) {
-            Map<String, Object> row = results.get(i);
-            sb.append(String.format("[%d] Commit: %s\n", i + 1, row.get("commit_hash")));
-            sb.append(String.format("    Author: %s\n", row.get("author")));
-            sb.append(String.format("    Date: %s\n", row.get("commit_date")));
-            sb.append(String.format("    Message: %s\n", row.get("message")));
-            sb.append(String.format("    Summary: %s\n", row.get("summary_text")));
+    /**
+     * @param deadline bounds the SQL statements (statement_timeout); null for no limit
+     */
+    public List<CommitSearchHit> fusedSearch(String queryText, float[] queryEmbedding, int limit, Deadline deadline) {
+        String lexicalQuery = toLexicalQuery(queryText);
+        if (lexicalQuery.isEmpty()) {
+            return searchByEmbedding(queryEmbedding, limit, SearchTuning.DEFAULT, deadline);
+        }
+        EmbeddingVector vector = new EmbeddingVector(queryEmbedding);
+        int candidates = candidateCount(hybridCandidates);
+        List<Object> args = new ArrayList<>(candidateArgs(vector, candidates));
+        args.addAll(List.of(lexicalQuery, hybridCandidates, rrfK, limit));
 
-            if (row.get("feedback") != null && !row.get("feedback").toString().isEmpty()) {
-                sb.append(String.format("    Feedback: %s\n", row.get("feedback")));
+        try {
+            // Inside the try: a fallback result is not cached
+            return cached("fused", queryEmbedding, List.of(lexicalQuery, limit),
+                () -> withTuning(withMinEfSearch(SearchTuning.DEFAULT, candidates), deadline, () -> jdbcTemplate.query(
+                    FUSED_SEARCH_SQL.formatted(quantization.candidateOrder("embedding_vector")),
+                    (rs, rowNum) -> mapHit(rs, null, rs.getDouble("score")),
+                    args.toArray()
+                )));
+        } catch (Exception e) {
+            System.err.println("Fused search error: " + e.getMessage());
+            if (deadline != null && deadline.isExpired()) {
+                throw e;
             }
+            return searchByEmbedding(queryEmbedding, limit, SearchTuning.DEFAULT, deadline);
+        }
+    }
 
-            sb.append(String.format("    Relevance Score: %.3f\n\n", row.get("score")));
+    /**
+     * OR-query of the words in free text, split the same way as commit.search_tsv
+     * (e.g. "NPE in OrderMapper" -> "npe | in | ordermapper")
+     */
+    static String toLexicalQuery(String text) {
+        if (text == null) {
+            return "";
+        }
+        Set<String> words = new LinkedHashSet<>();
+        Matcher matcher = LEXICAL_TOKEN.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            words.add(matcher.group());
         }
+        return String.join(" | ", words);
+    }
 
-        return sb.toString();
+    /**
+     * Search by specific field (summary_text or diff_text)
+     */
+    public List<CommitSearchHit> searchByField(String field, float[] queryEmbedding, int limit) {
+        return searchByField(field, queryEmbedding, limit, null);
+    }
+
+    /**
+     * @param deadline bounds the SQL statements (statement_timeout); null for no limit
+     */
+    public List<CommitSearchHit> searchByField(String field, float[] queryEmbedding, int limit, Deadline deadline) {
+        if ("diff_text".equals(field)) {
+            return searchChunks(queryEmbedding, limit, defaultChunkAggregation, deadline);
+        }
+        return searchByEmbedding(queryEmbedding, limit, SearchTuning.DEFAULT, deadline);
+    }
+
+    /**
+     * Search diff hunk embeddings and aggregate the matching chunks to their commits
+     */
+    public List<CommitSearchHit> searchChunks(float[] queryEmbedding, int limit, ChunkAggregation aggregation) {
+        return searchChunks(queryEmbedding, limit, aggregation, null);
     }
-}
 
+    public List<CommitSearchHit> searchChunks(float[] queryEmbedding, int limit, ChunkAggregation aggregation,
+                                              Deadline deadline) {
+        return cached("chunks", queryEmbedding, List.of(limit, aggregation),
+                () -> searchChunksUncached(queryEmbedding, limit, aggregation, deadline));
+    }
+
+    private List<CommitSearchHit> searchChunksUncached(float[] queryEmbedding, int limit, ChunkAggregation aggregation,
+                                                       Deadline deadline) {
+        EmbeddingVector vector = new EmbeddingVector(queryEmbedding);
+
+        int hits = limit * chunkCandidatesPerResult;
+        int candidates = candidateCount(hits);
+        List<Object> args = new ArrayList<>();
+        args.add(vector);
+        args.add(embeddingModelService.getActiveModelName());
+        if (quantization.quantized()) {
+            args.add(vector);
+        }
+        args.addAll(List.of(candidates, hits, limit));
+
+        return withTuning(withMinEfSearch(SearchTuning.DEFAULT, candidates), deadline, () -> jdbcTemplate.query(
+            CHUNK_SEARCH_SQL.formatted(quantization.candidateOrder("ch.embedding_vector"), aggregation.scoreExpression),
+            (rs, rowNum) -> mapHit(rs, rs.getString("matched_file"), rs.getDouble("score")),
+            args.toArray()
+        ));
+    }
+}
@@ -2,12 +2,20 @@ package com.ntsal.ntsal_ai_knowledge_hub.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ntsal.ntsal_ai_knowledge_hub.client.McpClient;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.sql.PreparedStatement;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
 
 /**
  * SQL Executor Service - Executes SQL queries via MCP or direct JDBC
@@ -16,60 +24,122 @@ import java.util.Map;
 public class SqlExecutorService {
     private final McpClient mcpClient;
     private final JdbcTemplate jdbcTemplate;
+    private final HikariDataSource generatedSqlDataSource;
+    private final JdbcTemplate generatedSqlJdbcTemplate;
+    private final ContextPacker contextPacker;
     private final ObjectMapper objectMapper;
 
-    public SqlExecutorService(McpClient mcpClient, JdbcTemplate jdbcTemplate) {
+    /**
+     * Planner-generated SQL (sourceType "sql") on the direct JDBC path runs on its own small read-only pool,
+     * so a pile of slow generated queries can't take the connections commit lookups, search and ingestion
+     * need. With MCP enabled, SQL goes to the MCP server first, which uses its own connections and
+     * permissions; only the JDBC fallback is isolated here.
+     */
+    public SqlExecutorService(McpClient mcpClient,
+                              JdbcTemplate jdbcTemplate,
+                              ContextPacker contextPacker,
+                              DataSourceProperties dataSourceProperties,
+                              @Value("${ai.sql.pool.maximum-pool-size:3}") int generatedSqlPoolSize,
+                              @Value("${ai.sql.pool.connection-timeout-ms:5000}") long generatedSqlConnectionTimeoutMs) {
         this.mcpClient = mcpClient;
         this.jdbcTemplate = jdbcTemplate;
+        this.contextPacker = contextPacker;
         this.objectMapper = new ObjectMapper();
+
+        this.generatedSqlDataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        generatedSqlDataSource.setPoolName("ai-sql");
+        generatedSqlDataSource.setMaximumPoolSize(generatedSqlPoolSize);
+        generatedSqlDataSource.setMinimumIdle(0);
+        generatedSqlDataSource.setConnectionTimeout(generatedSqlConnectionTimeoutMs);
+        // Connection.setReadOnly alone is ignored by pgjdbc under autocommit (readOnlyMode=transaction);
+        // "always" applies it to every statement, and the session default covers any path around the driver
+        generatedSqlDataSource.setReadOnly(true);
+        generatedSqlDataSource.addDataSourceProperty("readOnlyMode", "always");
+        generatedSqlDataSource.setConnectionInitSql("SET default_transaction_read_only = on");
+        this.generatedSqlJdbcTemplate = new JdbcTemplate(generatedSqlDataSource);
+    }
+
+    @PreDestroy
+    public void closeGeneratedSqlPool() {
+        generatedSqlDataSource.close();
     }
 
     /**
-     * Execute SQL query and return formatted results
+     * Execute SQL query and return formatted results, packed into the sourceType's context budget.
+     * The query is cancelled when the deadline passes, and the Mono fails with TimeoutException if it
+     * passed before there was a result.
      */
-    public Mono<String> executeSql(String sql) {
+    public Mono<String> executeSql(String sql, String sourceType, Deadline deadline) {
         return mcpClient.executeSql(sql)
-                .map(response -> {
+                .timeout(deadline.remaining(), Mono.just(Map.of("error", "MCP call exceeded the deadline")))
+                .flatMap(response -> {
                     try {
                         if (response.containsKey("error")) {
                             // Fallback to direct JDBC if MCP fails
-                            return executeDirectJdbc(sql);
+                            return fallbackToDirectJdbc(sql, sourceType, deadline);
                         }
 
                         // Format the response for LLM consumption
-                        return formatSqlResults(response);
+                        return Mono.just(formatSqlResults(response, sourceType));
                     } catch (Exception e) {
                         // Fallback to direct JDBC
-                        return executeDirectJdbc(sql);
+                        return fallbackToDirectJdbc(sql, sourceType, deadline);
                     }
                 });
     }
 
     /**
-     * Direct JDBC execution as fallback
+     * Retry over JDBC, unless MCP used up the deadline: then fail with TimeoutException, as a retry could only
+     * run past it
      */
-    private String executeDirectJdbc(String sql) {
-        try {
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql);
-
-            if (results.isEmpty()) {
-                return "No results found.";
-            }
-
-            StringBuilder sb = new StringBuilder();
-            for (int i = 0; i < Math.min(results.size(), 50); i++) {
-                Map<String, Object> row = results.get(i);
-                sb.append("Row ").append(i + 1).append(": ");
-                row.forEach((key, value) -> sb.append(key).append("=").append(value).append(", "));
-                if (sb.length() > 2) sb.setLength(sb.length() - 2);
-                sb.append("\n");
-            }
+    private Mono<String> fallbackToDirectJdbc(String sql, String sourceType, Deadline deadline) {
+        if (deadline.isExpired()) {
+            return Mono.error(new TimeoutException("SQL query exceeded the deadline"));
+        }
+        return Mono.just(executeDirectJdbc(sql, sourceType, deadline));
+    }
 
-            if (results.size() > 50) {
-                sb.append("... (").append(results.size() - 50).append(" more rows)\n");
+    /**
+     * Run a fixed lookup with bound parameters on the read-only pool, packed into the sourceType's context budget.
+     * Never goes through MCP, which only takes SQL text. Fails with TimeoutException when the deadline passed
+     * before there was a result.
+     */
+    public Mono<String> executeQuery(String sql, String sourceType, Deadline deadline, Object... args) {
+        if (deadline.isExpired()) {
+            return Mono.error(new TimeoutException("SQL query exceeded the deadline"));
+        }
+        try {
+            List<Map<String, Object>> results = generatedSqlJdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setQueryTimeout(deadline.queryTimeoutSeconds());
+                for (int i = 0; i < args.length; i++) {
+                    statement.setObject(i + 1, args[i]);
+                }
+                return statement;
+            }, new ColumnMapRowMapper());
+            return Mono.just(contextPacker.packRows(results, sourceType));
+        } catch (Exception e) {
+            if (e instanceof QueryTimeoutException || deadline.isExpired()) {
+                return Mono.error(new TimeoutException("SQL query exceeded the deadline"));
             }
+            return Mono.just("Error executing SQL: " + e.getMessage());
+        }
+    }
 
-            return sb.toString();
+    /**
+     * Direct JDBC execution as fallback
+     */
+    private String executeDirectJdbc(String sql, String sourceType, Deadline deadline) {
+        try {
+            JdbcTemplate template = "sql".equals(sourceType) ? generatedSqlJdbcTemplate : jdbcTemplate;
+            List<Map<String, Object>> results = template.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setQueryTimeout(deadline.queryTimeoutSeconds());
+                return statement;
+            }, new ColumnMapRowMapper());
+            return contextPacker.packRows(results, sourceType);
         } catch (Exception e) {
             return "Error executing SQL: " + e.getMessage();
         }
@@ -78,7 +148,7 @@ public class SqlExecutorService {
     /**
      * Format SQL results into human-readable text
      */
-    private String formatSqlResults(Map<String, Object> response) {
+    private String formatSqlResults(Map<String, Object> response, String sourceType) {
         try {
             StringBuilder result = new StringBuilder();
 
@@ -90,28 +160,11 @@ public class SqlExecutorService {
                         result.append(item.get("text")).append("\n");
                     }
                 }
+                return contextPacker.packText(result.toString(), sourceType);
             } else if (response.containsKey("result")) {
                 Object resultData = response.get("result");
                 if (resultData instanceof List) {
-                    List<Map<String, Object>> rows = (List<Map<String, Object>>) resultData;
-                    if (rows.isEmpty()) {
-                        return "No results found.";
-                    }
-
-                    // Format as table-like text
-                    for (int i = 0; i < rows.size() && i < 50; i++) { // Limit to 50 rows
-                        Map<String, Object> row = rows.get(i);
-                        result.append("Row ").append(i + 1).append(": ");
-                        row.forEach((key, value) ->
-                            result.append(key).append("=").append(value).append(", ")
-                        );
-                        result.setLength(result.length() - 2); // Remove last comma
-                        result.append("\n");
-                    }
-
-                    if (rows.size() > 50) {
-                        result.append("... (").append(rows.size() - 50).append(" more rows)\n");
-                    }
+                    return contextPacker.packRows((List<Map<String, Object>>) resultData, sourceType);
                 } else {
                     result.append(resultData.toString());
                 }
@@ -120,7 +173,7 @@ public class SqlExecutorService {
                 result.append(objectMapper.writeValueAsString(response));
             }
 
-            return result.toString();
+            return contextPacker.packText(result.toString(), sourceType);
         } catch (Exception e) {
             return "Error formatting results: " + e.getMessage();
         }
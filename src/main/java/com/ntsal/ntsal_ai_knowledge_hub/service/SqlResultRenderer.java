@@ -0,0 +1,182 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Renders SQL result rows as compact text for the answer prompt, picking the layout by result shape:
+ * a single value as "column: value", a single row as one "column: value" line per column, and anything
+ * larger as a table with the header written once. When not every row fits, the rows that do are followed
+ * by a per-column summary of all of them (range and average of numbers, range of dates, distinct text).
+ */
+public final class SqlResultRenderer {
+    private static final String NO_RESULTS = "No results found.";
+    private static final String SEPARATOR = " | ";
+    private static final String NULL = "NULL";
+    // Narrowest a table cell is cut to, however many columns there are
+    private static final int MIN_CELL_CHARS = 40;
+    private static final int CELL_DECIMALS = 4;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern ISO_DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}.*");
+
+    private SqlResultRenderer() {
+    }
+
+    /**
+     * @param budgetChars  total characters the rendering may take
+     * @param maxCellChars longest value in a table cell; a single row may use the whole budget instead
+     */
+    public static String render(List<Map<String, Object>> rows, int budgetChars, int maxCellChars) {
+        if (rows == null || rows.isEmpty()) {
+            return NO_RESULTS;
+        }
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        if (rows.size() == 1) {
+            return renderRow(rows.get(0), columns, budgetChars);
+        }
+        return renderTable(rows, columns, budgetChars, maxCellChars);
+    }
+
+    private static String renderRow(Map<String, Object> row, List<String> columns, int budgetChars) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns) {
+            // Long text (diff_text, summaries) gets whatever is left after the columns before it
+            int left = Math.max(budgetChars - sb.length() - column.length() - 3, MIN_CELL_CHARS);
+            sb.append(column).append(": ").append(trim(text(row.get(column)), left)).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static String renderTable(List<Map<String, Object>> rows, List<String> columns,
+                                      int budgetChars, int maxCellChars) {
+        int cellChars = Math.max(maxCellChars / columns.size(), MIN_CELL_CHARS);
+        String header = String.join(SEPARATOR, columns) + "\n";
+        List<String> lines = new ArrayList<>(rows.size());
+        int total = header.length();
+        for (Map<String, Object> row : rows) {
+            String line = line(row, columns, cellChars);
+            lines.add(line);
+            total += line.length();
+        }
+        if (total <= budgetChars) {
+            return header + String.join("", lines);
+        }
+
+        // Not everything fits: the summary covers all rows, the listed rows fill the space left beside it
+        String summary = summarize(rows, columns);
+        StringBuilder sb = new StringBuilder(header);
+        int packed = 0;
+        for (String line : lines) {
+            if (sb.length() + line.length() + summary.length() > budgetChars && packed > 0) {
+                break;
+            }
+            sb.append(line);
+            packed++;
+        }
+        sb.append("... (").append(rows.size() - packed).append(" more rows omitted)\n");
+        sb.append(summary);
+        return sb.toString();
+    }
+
+    private static String line(Map<String, Object> row, List<String> columns, int cellChars) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns) {
+            if (!sb.isEmpty()) {
+                sb.append(SEPARATOR);
+            }
+            String value = WHITESPACE.matcher(text(row.get(column))).replaceAll(" ").replace("|", "\\|");
+            sb.append(trim(value, cellChars));
+        }
+        return sb.append("\n").toString();
+    }
+
+    private static String summarize(List<Map<String, Object>> rows, List<String> columns) {
+        StringBuilder sb = new StringBuilder("Summary of all ").append(rows.size()).append(" rows:\n");
+        for (String column : columns) {
+            sb.append("  ").append(column).append(": ").append(summarizeColumn(rows, column)).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static String summarizeColumn(List<Map<String, Object>> rows, String column) {
+        int nulls = 0;
+        int numbers = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        boolean integral = true;
+        boolean dates = true;
+        String first = null;
+        String last = null;
+        Set<String> distinct = new HashSet<>();
+        for (Map<String, Object> row : rows) {
+            Object value = row.get(column);
+            if (value == null) {
+                nulls++;
+                continue;
+            }
+            if (value instanceof Number number) {
+                double v = number.doubleValue();
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+                sum += v;
+                numbers++;
+                integral &= !(value instanceof Double || value instanceof Float || value instanceof BigDecimal);
+            }
+            String text = text(value);
+            dates &= value instanceof Temporal || value instanceof Date || ISO_DATE.matcher(text).matches();
+            if (first == null || text.compareTo(first) < 0) {
+                first = text;
+            }
+            if (last == null || text.compareTo(last) > 0) {
+                last = text;
+            }
+            distinct.add(text);
+        }
+
+        int present = rows.size() - nulls;
+        String nullNote = nulls > 0 ? ", " + nulls + " null" : "";
+        if (present == 0) {
+            return "all null";
+        }
+        if (numbers == present) {
+            return "min " + number(min, integral) + ", max " + number(max, integral) +
+                    ", avg " + number(sum / numbers, false) + ", sum " + number(sum, integral) + nullNote;
+        }
+        if (dates) {
+            return trim(first, MIN_CELL_CHARS) + " .. " + trim(last, MIN_CELL_CHARS) + nullNote;
+        }
+        return distinct.size() + " distinct" + nullNote;
+    }
+
+    private static String number(double value, boolean integral) {
+        return integral ? String.valueOf((long) value) : String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static String text(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            // Computed averages and ratios print 16 digits that only cost tokens
+            double v = ((Number) value).doubleValue();
+            if (Double.isFinite(v)) {
+                return BigDecimal.valueOf(v).setScale(CELL_DECIMALS, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+            }
+        }
+        return value == null ? NULL : String.valueOf(value);
+    }
+
+    private static String trim(String text, int maxChars) {
+        if (text.length() <= maxChars) {
+            return text;
+        }
+        return text.substring(0, Math.max(0, maxChars - 3)) + "...";
+    }
+}
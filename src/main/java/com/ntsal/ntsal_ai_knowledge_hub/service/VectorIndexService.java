@@ -0,0 +1,261 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.entity.EmbeddingModelEntity;
+import com.ntsal.ntsal_ai_knowledge_hub.entity.converter.EmbeddingVector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Vector Index Service - Keeps an in-memory HNSW index of commit embeddings so pure vector searches
+ * don't scan vectors in Postgres. Postgres stays the source of truth: the index is loaded from it at
+ * startup and after a model cutover, and searches use SQL until the index is ready.
+ */
+@Service
+public class VectorIndexService {
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingModelService embeddingModelService;
+
+    @Value("${search.vector.in-memory.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.vector.in-memory.m:16}")
+    private int m;
+
+    @Value("${search.vector.in-memory.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${search.vector.in-memory.ef-search:64}")
+    private int defaultEfSearch;
+
+    @Value("${search.vector.in-memory.load-batch-size:5000}")
+    private int loadBatchSize;
+
+    @Value("${search.vector.in-memory.rebuild-tombstone-ratio:0.2}")
+    private double rebuildTombstoneRatio;
+
+    // Null until loaded, and while reloading for a different model
+    private volatile ModelIndex loadedIndex;
+
+    // Guarded by this: writes that arrive while a load is running are applied once it finishes, and a
+    // rebuild requested meanwhile runs after it. A load started before modelChanged() is not swapped in.
+    private boolean loading;
+    private boolean reloadRequested;
+    private long modelGeneration;
+    private final List<PendingWrite> pendingWrites = new ArrayList<>();
+
+    private record PendingWrite(long commitId, EmbeddingVector vector, String model) {
+    }
+
+    // Swapped as one reference, so a search never pairs one model's graph with another's name
+    private record ModelIndex(HnswIndex graph, String model) {
+    }
+
+    public VectorIndexService(JdbcTemplate jdbcTemplate, EmbeddingModelService embeddingModelService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.embeddingModelService = embeddingModelService;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Reload in the background, e.g. after a model cutover
+     */
+    @Async
+    public void rebuildAsync() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Load every stored vector of the active model into a fresh index and swap it in. A request that
+     * arrives while a load is running is not dropped: the index is loaded once more after it.
+     */
+    public void rebuild() {
+        synchronized (this) {
+            if (loading) {
+                reloadRequested = true;
+                return;
+            }
+            loading = true;
+        }
+
+        try {
+            boolean again;
+            do {
+                load();
+                synchronized (this) {
+                    again = reloadRequested;
+                    reloadRequested = false;
+                }
+            } while (again);
+        } finally {
+            synchronized (this) {
+                loading = false;
+                pendingWrites.clear();
+            }
+        }
+    }
+
+    /**
+     * Drop the index now because the active model changed; searches use SQL until rebuild() loads the
+     * new model's vectors. A load already running is discarded and started again.
+     */
+    public synchronized void modelChanged() {
+        loadedIndex = null;
+        modelGeneration++;
+        pendingWrites.clear();
+        if (loading) {
+            reloadRequested = true;
+        }
+    }
+
+    private void load() {
+        try {
+            long generation;
+            synchronized (this) {
+                generation = modelGeneration;
+            }
+            String model = embeddingModelService.getActiveModelName();
+            ModelIndex previous = loadedIndex;
+            if (previous != null && !model.equals(previous.model())) {
+                // Vectors of the previous model can't answer queries embedded with the new one
+                loadedIndex = null;
+            }
+
+            long start = System.currentTimeMillis();
+            Integer expected = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM commit WHERE embedding_vector IS NOT NULL AND embedding_model = ?",
+                    Integer.class, model);
+            HnswIndex fresh = embeddingModelService.getActiveModel()
+                    .map(EmbeddingModelEntity::getDimension)
+                    .map(dimension -> new HnswIndex(dimension, m, efConstruction, expected != null ? expected : 0))
+                    .orElse(null);
+
+            // Keyset pages keep the load from materialising the whole table at once
+            long lastId = 0;
+            int loaded = 0;
+            while (fresh != null) {
+                List<Map<String, Object>> page = jdbcTemplate.queryForList("""
+                        SELECT id, embedding_vector
+                        FROM commit
+                        WHERE embedding_vector IS NOT NULL
+                          AND embedding_model = ?
+                          AND id > ?
+                        ORDER BY id
+                        LIMIT ?
+                        """, model, lastId, loadBatchSize);
+                for (Map<String, Object> row : page) {
+                    lastId = ((Number) row.get("id")).longValue();
+                    fresh.add(lastId, ((EmbeddingVector) row.get("embedding_vector")).toArray());
+                }
+                loaded += page.size();
+                if (page.size() < loadBatchSize) {
+                    break;
+                }
+            }
+
+            synchronized (this) {
+                if (generation != modelGeneration) {
+                    // The model changed while loading; the follow-up load picks up the new one
+                    return;
+                }
+                for (PendingWrite write : pendingWrites) {
+                    if (fresh != null && write.model().equals(model)) {
+                        fresh.add(write.commitId(), write.vector().toArray());
+                    }
+                }
+                pendingWrites.clear();
+                loadedIndex = fresh != null ? new ModelIndex(fresh, model) : null;
+            }
+            System.out.println("🧭 In-memory vector index loaded: " + loaded + " vectors (" + model + ") in " +
+                    (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            System.err.println("Vector index load error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild when replaced vectors have left too many tombstones in the graph
+     */
+    public void compactIfNeeded() {
+        ModelIndex current = loadedIndex;
+        if (enabled && current != null && current.graph().tombstoneRatio() > rebuildTombstoneRatio) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Record a vector just written to commit.embedding_vector
+     */
+    public synchronized void upsert(long commitId, EmbeddingVector vector, String model) {
+        if (!enabled) {
+            return;
+        }
+        if (loading) {
+            pendingWrites.add(new PendingWrite(commitId, vector, model));
+            return;
+        }
+        ModelIndex current = loadedIndex;
+        if (current != null && model.equals(current.model())) {
+            current.graph().add(commitId, vector.toArray());
+        }
+    }
+
+    /**
+     * Drop a commit that no longer exists (or lost its vector) so searches stop returning it
+     */
+    public synchronized void remove(long commitId) {
+        ModelIndex current = loadedIndex;
+        if (current != null) {
+            current.graph().remove(commitId);
+        }
+    }
+
+    /**
+     * Approximate top-k commit ids, or empty when the index can't serve the query and SQL must
+     *
+     * @param efSearch beam width; null uses the configured default
+     */
+    public Optional<List<HnswIndex.Hit>> search(float[] queryEmbedding, int limit, Integer efSearch) {
+        ModelIndex current = loadedIndex;
+        if (!enabled || current == null || current.graph().dimension() != queryEmbedding.length) {
+            return Optional.empty();
+        }
+        // Query vectors come from the active model; another model's graph would rank them as noise
+        if (!current.model().equals(embeddingModelService.getActiveModelName())) {
+            return Optional.empty();
+        }
+        return Optional.of(current.graph().search(queryEmbedding, limit, efSearch != null ? efSearch : defaultEfSearch));
+    }
+
+    public Map<String, Object> getStatus() {
+        ModelIndex current = loadedIndex;
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("ready", current != null);
+        status.put("model", current != null ? current.model() : null);
+        status.put("size", current != null ? current.graph().size() : 0);
+        status.put("tombstoneRatio", current != null ? current.graph().tombstoneRatio() : 0);
+        synchronized (this) {
+            status.put("loading", loading);
+        }
+        return status;
+    }
+}
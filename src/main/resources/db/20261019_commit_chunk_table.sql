@@ -0,0 +1,27 @@
+--liquibase formatted sql
+
+--changeset admin:20261019_commit_chunk_table.sql
+-- Embeddings of individual diff hunks, chunked to the embedding model's token window
+CREATE TABLE IF NOT EXISTS public.commit_chunk
+(
+    id               BIGSERIAL    NOT NULL,
+    commit_id        BIGINT       NOT NULL,
+    file_path        VARCHAR      NOT NULL,
+    chunk_index      INT          NOT NULL,
+    content          TEXT         NOT NULL,
+    embedding_vector vector(384)  NOT NULL,
+    embedding_model  VARCHAR(255) NOT NULL,
+    created_at       TIMESTAMP    NOT NULL DEFAULT now(),
+    PRIMARY KEY (id),
+    CONSTRAINT commit_chunk_commit_id_fkey FOREIGN KEY (commit_id)
+        REFERENCES public.commit (id) MATCH SIMPLE
+        ON UPDATE NO ACTION
+        ON DELETE CASCADE
+)
+    TABLESPACE pg_default;
+
+ALTER TABLE public.commit_chunk
+    OWNER to ${user_owner};
+
+CREATE INDEX IF NOT EXISTS commit_chunk_commit_id_idx
+    ON public.commit_chunk (commit_id, embedding_model);
@@ -0,0 +1,50 @@
+--liquibase formatted sql
+
+--changeset admin:20261019_commit_default_partition.sql
+-- Catch-all partition for commits of repositories that have no partition of their own yet (repositories
+-- inserted by SQL, restored or seeded data), so their inserts don't fail
+CREATE TABLE IF NOT EXISTS public.commit_default PARTITION OF public.commit DEFAULT;
+
+ALTER TABLE public.commit_default
+    OWNER to ${user_owner};
+
+--changeset admin:20261019_ensure_commit_partition_default.sql splitStatements:false
+-- A repository's partition can't be created while the default partition holds rows for it, so those rows
+-- are moved out first, in the same transaction. Called by GithubRepoService.createRepo and before collecting.
+CREATE OR REPLACE FUNCTION public.ensure_commit_partition(repo_id BIGINT) RETURNS void AS
+$$
+DECLARE
+    partition_name TEXT := 'commit_repo_' || repo_id;
+BEGIN
+    IF to_regclass(format('public.%I', partition_name)) IS NOT NULL THEN
+        RETURN;
+    END IF;
+
+    CREATE TEMP TABLE commit_default_moved ON COMMIT DROP AS
+    SELECT id, commit_hash, author, message, diff_text, summary_text, feedback, embedding_vector,
+           committed_date, github_repo_id, embedding_model, embedding_content_hash
+    FROM public.commit_default
+    WHERE github_repo_id = repo_id;
+    DELETE FROM public.commit_default WHERE github_repo_id = repo_id;
+
+    EXECUTE format('CREATE TABLE public.%I PARTITION OF public.commit FOR VALUES IN (%s)', partition_name, repo_id);
+
+    INSERT INTO public.commit (id, commit_hash, author, message, diff_text, summary_text, feedback, embedding_vector,
+                               committed_date, github_repo_id, embedding_model, embedding_content_hash)
+    SELECT id, commit_hash, author, message, diff_text, summary_text, feedback, embedding_vector,
+           committed_date, github_repo_id, embedding_model, embedding_content_hash
+    FROM commit_default_moved;
+    DROP TABLE commit_default_moved;
+END
+$$ LANGUAGE plpgsql;
+
+--changeset admin:20261019_drop_commit_partition_function.sql splitStatements:false
+-- Drops a deleted repository's partition and the commits in it at once. Called by GithubRepoService.deleteRepo.
+CREATE OR REPLACE FUNCTION public.drop_commit_partition(repo_id BIGINT) RETURNS void AS
+$$
+BEGIN
+    EXECUTE format('DROP TABLE IF EXISTS public.%I', 'commit_repo_' || repo_id);
+END
+$$ LANGUAGE plpgsql;
+
+ALTER FUNCTION public.drop_commit_partition(BIGINT) OWNER TO ${user_owner};
@@ -0,0 +1,9 @@
+--liquibase formatted sql
+
+--changeset admin:20261019_commit_diff_text_trgm_index.sql
+-- The search filter's file path is matched against the diff (whose "diff --git" headers name every
+-- changed file) rather than commit_chunk.file_path, so commits without chunks aren't filtered out.
+CREATE INDEX IF NOT EXISTS commit_diff_text_trgm_idx
+    ON public.commit USING gin (diff_text gin_trgm_ops);
+
+DROP INDEX IF EXISTS public.commit_chunk_file_path_trgm_idx;
@@ -0,0 +1,22 @@
+--liquibase formatted sql
+
+--changeset admin:20261019_pg_trgm_extension.sql
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+--changeset admin:20261019_commit_filter_indexes.sql runInTransaction:false
+-- Indexes behind the structured search filter (SemanticSearchService.filterPredicates).
+-- Trigram GIN indexes serve the '%text%' matches on author and file path; the partial b-tree
+-- indexes only cover embedded commits, the only ones a vector search can return.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS commit_author_trgm_idx
+    ON public.commit USING gin (lower(author) gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS commit_repo_committed_date_idx
+    ON public.commit (github_repo_id, committed_date)
+    WHERE embedding_vector IS NOT NULL;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS commit_committed_date_idx
+    ON public.commit (committed_date)
+    WHERE embedding_vector IS NOT NULL;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS commit_chunk_file_path_trgm_idx
+    ON public.commit_chunk USING gin (file_path gin_trgm_ops);
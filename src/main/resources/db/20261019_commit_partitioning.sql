@@ -0,0 +1,85 @@
+--liquibase formatted sql
+
+--changeset admin:20261019_ensure_commit_partition_function.sql splitStatements:false
+-- One list partition of commit per repository; called for existing repositories below and by
+-- GithubRepoService.createRepo for new ones. Indexes defined on commit are created on the new partition.
+CREATE OR REPLACE FUNCTION public.ensure_commit_partition(repo_id BIGINT) RETURNS void AS
+$$
+BEGIN
+    EXECUTE format('CREATE TABLE IF NOT EXISTS public.%I PARTITION OF public.commit FOR VALUES IN (%s)',
+                   'commit_repo_' || repo_id, repo_id);
+END
+$$ LANGUAGE plpgsql;
+
+ALTER FUNCTION public.ensure_commit_partition(BIGINT) OWNER TO ${user_owner};
+
+--changeset admin:20261019_commit_partitioning.sql
+-- Rebuild commit as a table list-partitioned by github_repo_id, so repo-scoped searches only touch
+-- their partition and vacuum / index builds work per repository.
+-- The primary key must contain the partition key, so commit_chunk and commit_embedding_staging can no
+-- longer reference commit(id); their foreign keys are dropped. Commits are only deleted with their
+-- repository, and GithubRepoService.deleteRepo deletes the repository's chunks and staged vectors itself.
+ALTER TABLE public.commit_chunk DROP CONSTRAINT IF EXISTS commit_chunk_commit_id_fkey;
+ALTER TABLE public.commit_embedding_staging DROP CONSTRAINT IF EXISTS commit_embedding_staging_commit_id_fkey;
+
+ALTER SEQUENCE public.commit_id_seq OWNED BY NONE;
+ALTER TABLE public.commit RENAME TO commit_unpartitioned;
+ALTER INDEX public.commit_pkey RENAME TO commit_unpartitioned_pkey;
+
+CREATE TABLE public.commit
+(
+    id                     BIGINT      NOT NULL DEFAULT nextval('public.commit_id_seq'),
+    commit_hash            varchar     NOT NULL,
+    author                 varchar     NOT NULL,
+    message                varchar     NOT NULL,
+    diff_text              TEXT        NOT NULL,
+    summary_text           TEXT,
+    feedback               TEXT,
+    embedding_vector       vector(384),
+    committed_date         TIMESTAMP   NOT NULL,
+    github_repo_id         BIGINT      NOT NULL,
+    embedding_model        VARCHAR(255),
+    embedding_content_hash VARCHAR(64),
+    search_tsv             tsvector GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', regexp_replace(coalesce(message, ''), '[^[:alnum:]_]+', ' ', 'g')), 'A') ||
+        setweight(to_tsvector('simple', regexp_replace(coalesce(summary_text, ''), '[^[:alnum:]_]+', ' ', 'g')), 'B')
+    ) STORED,
+    PRIMARY KEY (id, github_repo_id)
+) PARTITION BY LIST (github_repo_id);
+
+SELECT public.ensure_commit_partition(id) FROM public.github_repo;
+
+INSERT INTO public.commit (id, commit_hash, author, message, diff_text, summary_text, feedback, embedding_vector,
+                           committed_date, github_repo_id, embedding_model, embedding_content_hash)
+SELECT id, commit_hash, author, message, diff_text, summary_text, feedback, embedding_vector,
+       committed_date, github_repo_id, embedding_model, embedding_content_hash
+FROM public.commit_unpartitioned;
+
+DROP TABLE public.commit_unpartitioned;
+
+ALTER TABLE public.commit
+    OWNER to ${user_owner};
+ALTER SEQUENCE public.commit_id_seq OWNED BY public.commit.id;
+
+ALTER TABLE public.commit
+    ADD CONSTRAINT commit_github_repo_id_fkey FOREIGN KEY (github_repo_id)
+        REFERENCES public.github_repo (id) MATCH SIMPLE
+        ON UPDATE NO ACTION
+        ON DELETE NO ACTION;
+
+-- Created on every partition. Within a partition github_repo_id is constant, so the
+-- (github_repo_id, committed_date) index is replaced by committed_date alone.
+-- The vector candidate index comes from 20261019_vector_quantization.sql.
+CREATE INDEX commit_embedding_content_hash_idx
+    ON public.commit (embedding_content_hash, embedding_model)
+    WHERE embedding_vector IS NOT NULL;
+
+CREATE INDEX commit_search_tsv_idx
+    ON public.commit USING gin (search_tsv);
+
+CREATE INDEX commit_author_trgm_idx
+    ON public.commit USING gin (lower(author) gin_trgm_ops);
+
+CREATE INDEX commit_committed_date_idx
+    ON public.commit (committed_date)
+    WHERE embedding_vector IS NOT NULL;
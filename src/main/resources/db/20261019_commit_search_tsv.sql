@@ -0,0 +1,15 @@
+--liquibase formatted sql
+
+--changeset admin:20261019_commit_search_tsv.sql
+-- Lexical search document over message (weight A) and summary (weight B). The 'simple' config keeps
+-- identifiers and ticket numbers as-is (no stemming or stop words); punctuation is replaced first so
+-- "OrderMapper.map" or "PROJ-123" are indexed as separate words.
+ALTER TABLE public.commit
+    ADD COLUMN IF NOT EXISTS search_tsv tsvector GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', regexp_replace(coalesce(message, ''), '[^[:alnum:]_]+', ' ', 'g')), 'A') ||
+        setweight(to_tsvector('simple', regexp_replace(coalesce(summary_text, ''), '[^[:alnum:]_]+', ' ', 'g')), 'B')
+    ) STORED;
+
+--changeset admin:20261019_commit_search_tsv_index.sql runInTransaction:false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS commit_search_tsv_idx
+    ON public.commit USING gin (search_tsv);
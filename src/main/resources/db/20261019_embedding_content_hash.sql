@@ -0,0 +1,23 @@
+--liquibase formatted sql
+
+--changeset admin:20261019_embedding_content_hash.sql
+-- SHA-256 of the exact text that was embedded, so unchanged text is never re-embedded
+-- and identical texts (cherry-picks, reverts) share one embedding call
+ALTER TABLE public.commit
+    ADD COLUMN IF NOT EXISTS embedding_content_hash VARCHAR(64);
+
+CREATE INDEX IF NOT EXISTS commit_embedding_content_hash_idx
+    ON public.commit (embedding_content_hash, embedding_model)
+    WHERE embedding_vector IS NOT NULL;
+
+ALTER TABLE public.commit_embedding_staging
+    ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+
+CREATE INDEX IF NOT EXISTS commit_embedding_staging_content_hash_idx
+    ON public.commit_embedding_staging (content_hash, embedding_model);
+
+ALTER TABLE public.commit_chunk
+    ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+
+CREATE INDEX IF NOT EXISTS commit_chunk_content_hash_idx
+    ON public.commit_chunk (content_hash, embedding_model);
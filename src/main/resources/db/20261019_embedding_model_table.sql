@@ -0,0 +1,53 @@
+--liquibase formatted sql
+
+--changeset admin:20261019_embedding_model_table.sql
+CREATE TABLE IF NOT EXISTS public.embedding_model
+(
+    id           BIGSERIAL    NOT NULL,
+    model_name   VARCHAR(255) NOT NULL,
+    dimension    INT          NOT NULL,
+    status       VARCHAR(32)  NOT NULL,
+    created_at   TIMESTAMP    NOT NULL DEFAULT now(),
+    activated_at TIMESTAMP,
+    PRIMARY KEY (id),
+    CONSTRAINT embedding_model_model_name_key UNIQUE (model_name)
+)
+    TABLESPACE pg_default;
+
+ALTER TABLE public.embedding_model
+    OWNER to ${user_owner};
+
+-- Only one model may serve search at a time
+CREATE UNIQUE INDEX IF NOT EXISTS embedding_model_single_active_idx
+    ON public.embedding_model (status) WHERE status = 'ACTIVE';
+
+INSERT INTO public.embedding_model (model_name, dimension, status, activated_at)
+VALUES ('all-MiniLM-L6-v2', 384, 'ACTIVE', now())
+ON CONFLICT (model_name) DO NOTHING;
+
+ALTER TABLE public.commit
+    ADD COLUMN IF NOT EXISTS embedding_model VARCHAR(255);
+
+UPDATE public.commit
+SET embedding_model = 'all-MiniLM-L6-v2'
+WHERE embedding_vector IS NOT NULL
+  AND embedding_model IS NULL;
+
+-- Vectors produced by a model that is still being rolled out; copied into
+-- commit.embedding_vector in a single transaction at cutover
+CREATE TABLE IF NOT EXISTS public.commit_embedding_staging
+(
+    commit_id        BIGINT       NOT NULL,
+    embedding_model  VARCHAR(255) NOT NULL,
+    embedding_vector vector(384)  NOT NULL,
+    created_at       TIMESTAMP    NOT NULL DEFAULT now(),
+    PRIMARY KEY (commit_id, embedding_model),
+    CONSTRAINT commit_embedding_staging_commit_id_fkey FOREIGN KEY (commit_id)
+        REFERENCES public.commit (id) MATCH SIMPLE
+        ON UPDATE NO ACTION
+        ON DELETE CASCADE
+)
+    TABLESPACE pg_default;
+
+ALTER TABLE public.commit_embedding_staging
+    OWNER to ${user_owner};
@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+--changeset admin:20261019_embedding_vector_index.sql runInTransaction:false
+-- Approximate nearest-neighbour indexes for cosine search. Build parameters come from
+-- spring.liquibase.parameters (hnsw_m, hnsw_ef_construction); recall/latency is then tuned
+-- per query with hnsw.ef_search.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS commit_embedding_vector_hnsw_idx
+    ON public.commit USING hnsw (embedding_vector vector_cosine_ops)
+    WITH (m = ${hnsw_m}, ef_construction = ${hnsw_ef_construction});
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS commit_chunk_embedding_vector_hnsw_idx
+    ON public.commit_chunk USING hnsw (embedding_vector vector_cosine_ops)
+    WITH (m = ${hnsw_m}, ef_construction = ${hnsw_ef_construction});
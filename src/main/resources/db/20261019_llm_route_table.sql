@@ -0,0 +1,23 @@
+--liquibase formatted sql
+
+--changeset admin:20261019_llm_route_table.sql
+-- Per-task LLM endpoints (PLANNER, ANSWER, SUMMARY, FEEDBACK). Routes of a task are tried in priority
+-- order until one answers; a task without routes uses the configs row (llm_summarizer_url, llm_model).
+CREATE TABLE IF NOT EXISTS public.llm_route
+(
+    id         BIGSERIAL    NOT NULL,
+    task       VARCHAR(32)  NOT NULL,
+    priority   INT          NOT NULL DEFAULT 0,
+    url        VARCHAR(255) NOT NULL,
+    api_key    TEXT,
+    model      VARCHAR(255) NOT NULL,
+    timeout_ms INT,
+    enabled    BOOLEAN      NOT NULL DEFAULT TRUE,
+    created_at TIMESTAMP    NOT NULL DEFAULT now(),
+    PRIMARY KEY (id),
+    CONSTRAINT llm_route_task_priority_key UNIQUE (task, priority)
+)
+    TABLESPACE pg_default;
+
+ALTER TABLE public.llm_route
+    OWNER to ${user_owner};
@@ -0,0 +1,55 @@
+--liquibase formatted sql
+
+--changeset admin:20261019_vector_extension_update.sql
+-- halfvec and binary_quantize need pgvector 0.7+
+ALTER EXTENSION vector UPDATE;
+
+-- The candidate index matching search.vector.quantization (liquibase parameter vector_quantization).
+-- These run on every start so switching the mode builds the new index and drops the ones it replaces.
+-- Expression indexes must match the expressions SemanticSearchService.VectorQuantization orders by.
+-- commit is partitioned (20261019_commit_partitioning.sql) and partitioned tables can't be indexed
+-- concurrently, so its indexes are built per partition under a lock; commit_chunk still builds concurrently.
+
+--changeset admin:20261019_vector_quantization_none.sql runAlways:true runOnChange:true runInTransaction:false
+--preconditions onFail:CONTINUE
+--precondition-sql-check expectedResult:1 SELECT CASE WHEN upper('${vector_quantization}') = 'NONE' THEN 1 ELSE 0 END
+CREATE INDEX IF NOT EXISTS commit_embedding_vector_hnsw_idx
+    ON public.commit USING hnsw (embedding_vector vector_cosine_ops)
+    WITH (m = ${hnsw_m}, ef_construction = ${hnsw_ef_construction});
+CREATE INDEX CONCURRENTLY IF NOT EXISTS commit_chunk_embedding_vector_hnsw_idx
+    ON public.commit_chunk USING hnsw (embedding_vector vector_cosine_ops)
+    WITH (m = ${hnsw_m}, ef_construction = ${hnsw_ef_construction});
+DROP INDEX IF EXISTS commit_embedding_halfvec_hnsw_idx;
+DROP INDEX CONCURRENTLY IF EXISTS commit_chunk_embedding_halfvec_hnsw_idx;
+DROP INDEX IF EXISTS commit_embedding_binary_hnsw_idx;
+DROP INDEX CONCURRENTLY IF EXISTS commit_chunk_embedding_binary_hnsw_idx;
+
+--changeset admin:20261019_vector_quantization_halfvec.sql runAlways:true runOnChange:true runInTransaction:false
+--preconditions onFail:CONTINUE
+--precondition-sql-check expectedResult:1 SELECT CASE WHEN upper('${vector_quantization}') = 'HALFVEC' THEN 1 ELSE 0 END
+-- 16-bit floats: half the index size, recall close to full precision
+CREATE INDEX IF NOT EXISTS commit_embedding_halfvec_hnsw_idx
+    ON public.commit USING hnsw ((embedding_vector::halfvec(384)) halfvec_cosine_ops)
+    WITH (m = ${hnsw_m}, ef_construction = ${hnsw_ef_construction});
+CREATE INDEX CONCURRENTLY IF NOT EXISTS commit_chunk_embedding_halfvec_hnsw_idx
+    ON public.commit_chunk USING hnsw ((embedding_vector::halfvec(384)) halfvec_cosine_ops)
+    WITH (m = ${hnsw_m}, ef_construction = ${hnsw_ef_construction});
+DROP INDEX IF EXISTS commit_embedding_vector_hnsw_idx;
+DROP INDEX CONCURRENTLY IF EXISTS commit_chunk_embedding_vector_hnsw_idx;
+DROP INDEX IF EXISTS commit_embedding_binary_hnsw_idx;
+DROP INDEX CONCURRENTLY IF EXISTS commit_chunk_embedding_binary_hnsw_idx;
+
+--changeset admin:20261019_vector_quantization_binary.sql runAlways:true runOnChange:true runInTransaction:false
+--preconditions onFail:CONTINUE
+--precondition-sql-check expectedResult:1 SELECT CASE WHEN upper('${vector_quantization}') = 'BINARY' THEN 1 ELSE 0 END
+-- One bit per dimension: 32x smaller index, needs a wider re-rank (search.vector.quantization-rerank-factor)
+CREATE INDEX IF NOT EXISTS commit_embedding_binary_hnsw_idx
+    ON public.commit USING hnsw ((binary_quantize(embedding_vector)::bit(384)) bit_hamming_ops)
+    WITH (m = ${hnsw_m}, ef_construction = ${hnsw_ef_construction});
+CREATE INDEX CONCURRENTLY IF NOT EXISTS commit_chunk_embedding_binary_hnsw_idx
+    ON public.commit_chunk USING hnsw ((binary_quantize(embedding_vector)::bit(384)) bit_hamming_ops)
+    WITH (m = ${hnsw_m}, ef_construction = ${hnsw_ef_construction});
+DROP INDEX IF EXISTS commit_embedding_vector_hnsw_idx;
+DROP INDEX CONCURRENTLY IF EXISTS commit_chunk_embedding_vector_hnsw_idx;
+DROP INDEX IF EXISTS commit_embedding_halfvec_hnsw_idx;
+DROP INDEX CONCURRENTLY IF EXISTS commit_chunk_embedding_halfvec_hnsw_idx;
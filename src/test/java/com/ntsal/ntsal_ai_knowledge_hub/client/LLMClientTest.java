@@ -0,0 +1,135 @@
+package com.ntsal.ntsal_ai_knowledge_hub.client;
+
+import com.ntsal.ntsal_ai_knowledge_hub.service.Deadline;
+import com.ntsal.ntsal_ai_knowledge_hub.service.LlmRouteService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LLMClientTest {
+    private static final List<Map<String, Object>> MESSAGES = List.of(Map.of("role", "user", "content", "hi"));
+
+    private final LlmRouteService llmRouteService = mock(LlmRouteService.class);
+    private final LLMClient client = new LLMClient(llmRouteService);
+    private final AtomicInteger requests = new AtomicInteger();
+    // A slow request must not hold up the others
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ReflectionTestUtils.setField(client, "defaultTimeoutMs", 5000L);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/ok", exchange -> respond(exchange, 200,
+                "{\"choices\":[{\"message\":{\"content\":\" answer from ok \"}}]}"));
+        server.createContext("/fail", exchange -> respond(exchange, 500, "{\"error\":\"overloaded\"}"));
+        server.createContext("/slow", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            send(exchange, 200, "{\"choices\":[{\"message\":{\"content\":\"too late\"}}]}");
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void failedRouteFallsBackToTheNext() {
+        routes(route("/fail", null), route("/ok", null));
+
+        assertThat(client.chat("answer", MESSAGES, 0.3, 100, null)).isEqualTo("answer from ok");
+        assertThat(requests).hasValue(2);
+    }
+
+    @Test
+    void routeSlowerThanItsTimeoutFallsBackToTheNext() {
+        routes(route("/slow", 200), route("/ok", null));
+
+        assertThat(client.chat("answer", MESSAGES, 0.3, 100, null)).isEqualTo("answer from ok");
+    }
+
+    @Test
+    void deadlineCutsTheAttemptShort() {
+        routes(route("/slow", null), route("/ok", null));
+        long start = System.nanoTime();
+
+        assertThatThrownBy(() -> client.chat("answer", MESSAGES, 0.3, 100, Deadline.after(Duration.ofMillis(300))))
+                .isInstanceOf(IllegalStateException.class);
+        // The next route isn't tried once the deadline has passed
+        assertThat(requests).hasValue(1);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1500));
+    }
+
+    @Test
+    void everyRouteFailing() {
+        routes(route("/fail", null), route("/fail", null));
+
+        assertThatThrownBy(() -> client.chat("answer", MESSAGES, 0.3, 100, null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageStartingWith("LLM answer failed: 500");
+        assertThat(requests).hasValue(2);
+    }
+
+    @Test
+    void noRoutes() {
+        routes();
+
+        assertThatThrownBy(() -> client.chat("answer", MESSAGES, 0.3, 100, null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("No LLM configured for answer");
+    }
+
+    private void routes(LlmRouteService.Route... routes) {
+        when(llmRouteService.routes("answer")).thenReturn(List.of(routes));
+    }
+
+    private LlmRouteService.Route route(String path, Integer timeoutMs) {
+        return new LlmRouteService.Route("http://localhost:" + server.getAddress().getPort() + path, "key",
+                "model" + path, timeoutMs);
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) {
+        requests.incrementAndGet();
+        send(exchange, status, body);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        try {
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        } catch (IOException e) {
+            // The client gave up (read timeout) before the response
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.ntsal.ntsal_ai_knowledge_hub.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchCursorTest {
+
+    @Test
+    void roundTripKeepsTheExactDistance() {
+        // The next page continues strictly after (distance, id), so the distance must not drift
+        for (double distance : new double[]{0, 0.1 + 0.2, (double) 0.123456789f, 1.9999999999999998, 1e-300}) {
+            SearchCursor cursor = new SearchCursor(distance, Long.MAX_VALUE);
+
+            assertThat(SearchCursor.decode(cursor.encode())).isEqualTo(cursor);
+        }
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        String token = new SearchCursor(0.987654321, 123456789L).encode();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void noTokenMeansFirstPage() {
+        assertThat(SearchCursor.decode(null)).isNull();
+        assertThat(SearchCursor.decode("  ")).isNull();
+    }
+
+    @Test
+    void malformedTokensAreRejected() {
+        for (String token : new String[]{"not base64!", encode("0.5"), encode("0.5:1:2"), encode("x:1"), encode("0.5:y")}) {
+            assertThatThrownBy(() -> SearchCursor.decode(token))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Invalid cursor");
+        }
+    }
+
+    private static String encode(String text) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
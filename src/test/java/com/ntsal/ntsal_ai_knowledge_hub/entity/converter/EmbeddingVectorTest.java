@@ -0,0 +1,96 @@
+package com.ntsal.ntsal_ai_knowledge_hub.entity.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmbeddingVectorTest {
+    private static final float[] VALUES = {0.5f, -1.25f, 3.4028235e38f, 1.0e-7f, 0f, -0f};
+
+    @Test
+    void binaryRoundTrip() throws SQLException {
+        EmbeddingVector vector = new EmbeddingVector(VALUES);
+        int offset = 3;
+        byte[] bytes = new byte[offset + vector.lengthInBytes()];
+
+        vector.toBytes(bytes, offset);
+        EmbeddingVector decoded = new EmbeddingVector();
+        decoded.setByteValue(bytes, offset);
+
+        assertThat(decoded.toArray()).containsExactly(VALUES);
+        assertThat(decoded).isEqualTo(vector);
+    }
+
+    @Test
+    void binaryLayoutIsPgvectorSendFormat() {
+        EmbeddingVector vector = new EmbeddingVector(new float[]{1f, 2f});
+        byte[] bytes = new byte[vector.lengthInBytes()];
+
+        vector.toBytes(bytes, 0);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        assertThat(bytes).hasSize(12);
+        assertThat(buffer.getShort()).isEqualTo((short) 2);
+        assertThat(buffer.getShort()).isZero();
+        assertThat(buffer.getFloat()).isEqualTo(1f);
+        assertThat(buffer.getFloat()).isEqualTo(2f);
+    }
+
+    @Test
+    void textRoundTrip() throws SQLException {
+        EmbeddingVector vector = new EmbeddingVector(VALUES);
+
+        EmbeddingVector parsed = new EmbeddingVector();
+        parsed.setValue(vector.getValue());
+
+        assertThat(parsed.toArray()).containsExactly(VALUES);
+        assertThat(parsed.getType()).isEqualTo(EmbeddingVector.PG_TYPE);
+    }
+
+    @Test
+    void parsesPgvectorTextOutput() throws SQLException {
+        EmbeddingVector parsed = new EmbeddingVector();
+        parsed.setValue(" [1, -2.5,3e-05] ");
+
+        assertThat(parsed.toArray()).containsExactly(1f, -2.5f, 3e-5f);
+        assertThat(parsed.dimension()).isEqualTo(3);
+    }
+
+    @Test
+    void emptyAndNullValues() throws SQLException {
+        EmbeddingVector empty = new EmbeddingVector();
+        empty.setValue("[]");
+        EmbeddingVector nullValue = new EmbeddingVector();
+        nullValue.setValue(null);
+
+        assertThat(empty.dimension()).isZero();
+        assertThat(empty.getValue()).isEqualTo("[]");
+        assertThat(nullValue.isNull()).isTrue();
+        assertThat(nullValue.getValue()).isNull();
+    }
+
+    @Test
+    void valuesCannotBeChangedOnceSet() {
+        float[] source = {1f, 2f};
+        EmbeddingVector vector = new EmbeddingVector(source);
+        source[0] = 9f;
+        vector.toArray()[1] = 9f;
+
+        assertThat(vector.toArray()).containsExactly(1f, 2f);
+        assertThat(vector.clone()).isSameAs(vector);
+        assertThatThrownBy(() -> vector.setValue("[3,4]")).isInstanceOf(SQLException.class);
+        assertThatThrownBy(() -> vector.setByteValue(new byte[8], 0)).isInstanceOf(SQLException.class);
+    }
+
+    @Test
+    void equalityIsByValue() {
+        assertThat(new EmbeddingVector(new float[]{1f, 2f}))
+                .isEqualTo(new EmbeddingVector(new float[]{1f, 2f}))
+                .hasSameHashCodeAs(new EmbeddingVector(new float[]{1f, 2f}))
+                .isNotEqualTo(new EmbeddingVector(new float[]{1f, 3f}));
+    }
+}
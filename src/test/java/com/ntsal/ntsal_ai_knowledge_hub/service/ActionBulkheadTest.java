@@ -0,0 +1,75 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActionBulkheadTest {
+    private static final Deadline LONG = Deadline.after(Duration.ofMinutes(1));
+
+    // One slot and one queue place per action
+    private final ActionBulkhead bulkhead = new ActionBulkhead(1, 1, 1, 1, 1, 1, 1, 1);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(bulkhead, "maxWaitMs", 5000L);
+        ReflectionTestUtils.setField(bulkhead, "retryAfterSeconds", 5L);
+    }
+
+    @Test
+    void queuedQuestionGetsTheSlotOnceItIsReleased() throws Exception {
+        ActionBulkhead.Permit running = bulkhead.acquire("execute_sql", LONG).orElseThrow();
+
+        CompletableFuture<Optional<ActionBulkhead.Permit>> queued =
+                CompletableFuture.supplyAsync(() -> bulkhead.acquire("execute_sql", LONG));
+        Thread.sleep(50);
+        assertThat(queued).isNotDone();
+
+        running.release();
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isPresent();
+    }
+
+    @Test
+    void questionFindingTheQueueFullIsShed() throws Exception {
+        bulkhead.acquire("hybrid_search", LONG).orElseThrow();
+        CompletableFuture<Optional<ActionBulkhead.Permit>> queued =
+                CompletableFuture.supplyAsync(() -> bulkhead.acquire("hybrid_search", LONG));
+        Thread.sleep(50);
+
+        assertThat(bulkhead.acquire("hybrid_search", LONG)).isEmpty();
+        assertThat(queued).isNotDone();
+    }
+
+    @Test
+    void questionIsShedWhenNoSlotFreesUpBeforeItsDeadline() {
+        bulkhead.acquire("semantic_search", LONG).orElseThrow();
+
+        assertThat(bulkhead.acquire("semantic_search", Deadline.after(Duration.ofMillis(20)))).isEmpty();
+    }
+
+    @Test
+    void actionsDoNotShareSlots() {
+        bulkhead.acquire("hybrid_search", LONG).orElseThrow();
+
+        assertThat(bulkhead.acquire("retrieve_commit", Deadline.after(Duration.ofMillis(20)))).isPresent();
+        assertThat(bulkhead.acquire("unknown_action", Deadline.after(Duration.ofMillis(20)))).isPresent();
+    }
+
+    @Test
+    void releasingTwiceFreesOneSlot() {
+        ActionBulkhead.Permit permit = bulkhead.acquire("execute_sql", LONG).orElseThrow();
+
+        permit.release();
+        permit.release();
+
+        assertThat(bulkhead.acquire("execute_sql", LONG)).isPresent();
+        assertThat(bulkhead.acquire("execute_sql", Deadline.after(Duration.ofMillis(20)))).isEmpty();
+    }
+}
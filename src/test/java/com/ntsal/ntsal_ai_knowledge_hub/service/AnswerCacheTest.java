@@ -0,0 +1,66 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AnswerCacheTest {
+    private static final float[] EMBEDDING = {0.6f, 0.8f};
+    private static final QueryPlannerService.Plan COUNT_BY_AUTHOR = new QueryPlannerService.Plan("execute_sql",
+            "SELECT COUNT(*) FROM commit WHERE LOWER(author) LIKE '%alice%'", null, null, null, SearchFilter.NONE);
+
+    private final FastPathPlanner fastPathPlanner = new FastPathPlanner();
+    private final SemanticSearchService semanticSearchService = mock(SemanticSearchService.class);
+    private final AnswerCache cache = new AnswerCache(semanticSearchService, 10);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "similarityThreshold", 0.95);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 3600L);
+        when(semanticSearchService.embeddingGeneration()).thenReturn(1L);
+    }
+
+    @Test
+    void paraphraseIsAnsweredFromTheCache() {
+        cache.store(key("How many commits by Alice?"), COUNT_BY_AUTHOR, cache.freshness(), Map.of("answer", "42"));
+
+        assertThat(cache.lookup(key("how many commits by alice"), cache.freshness())).hasValueSatisfying(answer ->
+                assertThat(answer).containsEntry("answer", "42").containsEntry("cached", true));
+    }
+
+    @Test
+    void answerIsDroppedOnceNewDataIsWritten() {
+        cache.store(key("how many commits by alice"), COUNT_BY_AUTHOR, cache.freshness(), Map.of("answer", "42"));
+
+        when(semanticSearchService.embeddingGeneration()).thenReturn(2L);
+
+        assertThat(cache.lookup(key("how many commits by alice"), cache.freshness())).isEmpty();
+    }
+
+    @Test
+    void otherSlotValuesAreNotServed() {
+        cache.store(key("how many commits by alice"), COUNT_BY_AUTHOR, cache.freshness(), Map.of("answer", "42"));
+
+        assertThat(cache.lookup(key("how many commits by bob"), cache.freshness())).isEmpty();
+    }
+
+    @Test
+    void answerOlderThanTheTtlIsNotServed() {
+        cache.store(key("how many commits by alice"), COUNT_BY_AUTHOR, cache.freshness(), Map.of("answer", "42"));
+
+        ReflectionTestUtils.setField(cache, "ttlSeconds", -1L);
+
+        assertThat(cache.lookup(key("how many commits by alice"), cache.freshness())).isEmpty();
+    }
+
+    private PlanCache.Key key(String question) {
+        return new PlanCache.Key(fastPathPlanner.slots(question), "model", EMBEDDING);
+    }
+}
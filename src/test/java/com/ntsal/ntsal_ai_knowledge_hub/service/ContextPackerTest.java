@@ -0,0 +1,79 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.dto.CommitSearchHit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextPackerTest {
+    private final ContextPacker packer = new ContextPacker();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(packer, "sqlBudget", 100);
+        ReflectionTestUtils.setField(packer, "semanticBudget", 200);
+        ReflectionTestUtils.setField(packer, "hybridBudget", 200);
+        ReflectionTestUtils.setField(packer, "commitBudget", 200);
+        ReflectionTestUtils.setField(packer, "maxFieldChars", 80);
+        ReflectionTestUtils.setField(packer, "duplicateSimilarity", 0.9);
+    }
+
+    @Test
+    void commitsThatDoNotFitAreCountedInsteadOfListed() {
+        List<CommitSearchHit> hits = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            hits.add(hit("c" + i, "change number " + i + " to module " + i, "touches part " + i));
+        }
+
+        String packed = packer.packCommits(hits, "semantic");
+
+        assertThat(ContextPacker.estimateTokens(packed)).isLessThanOrEqualTo(200 + 20);
+        assertThat(packed).startsWith("Found 20 relevant commits").contains("[1] Commit: c0").doesNotContain("c19")
+                .containsPattern("\\.\\.\\. \\(\\d+ more commits omitted\\)");
+    }
+
+    @Test
+    void nearIdenticalCommitsAreFoldedIntoTheFirst() {
+        String packed = packer.packCommits(List.of(
+                hit("aaa", "Fix NPE in OrderMapper", "Guards the null customer"),
+                hit("bbb", "Fix NPE in OrderMapper", "Guards the null customer"),
+                hit("ccc", "Add retry to the payment client", "Retries timeouts")), "semantic");
+
+        assertThat(packed).contains("[1] Commit: aaa", "Same change also in: bbb", "[2] Commit: ccc")
+                .doesNotContain("Commit: bbb");
+    }
+
+    @Test
+    void mostRelevantCommitIsKeptEvenIfItAloneExceedsTheBudget() {
+        ReflectionTestUtils.setField(packer, "semanticBudget", 10);
+
+        String packed = packer.packCommits(List.of(hit("aaa", "x".repeat(500), "y".repeat(500))), "semantic");
+
+        assertThat(packed).contains("[1] Commit: aaa").endsWith("...\n\n");
+    }
+
+    @Test
+    void longFieldsAreTrimmed() {
+        String packed = packer.packCommits(List.of(hit("aaa", "message", "s".repeat(500))), "commit");
+
+        assertThat(packed).contains("Summary: " + "s".repeat(77) + "...\n");
+    }
+
+    @Test
+    void textIsCutAtItsSourceBudget() {
+        assertThat(packer.packText("t".repeat(1000), "sql")).hasSize(400).endsWith("...");
+        assertThat(packer.packText("short", "sql")).isEqualTo("short");
+        assertThat(packer.packCommits(List.of(), "semantic")).isEqualTo("No results found.");
+    }
+
+    private static CommitSearchHit hit(String hash, String message, String summary) {
+        return new CommitSearchHit(hash.hashCode(), hash, "alice", LocalDateTime.of(2026, 10, 1, 12, 0),
+                message, summary, null, "repo", null, 0.5);
+    }
+}
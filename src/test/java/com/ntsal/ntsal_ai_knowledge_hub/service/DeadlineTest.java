@@ -0,0 +1,63 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeadlineTest {
+
+    @Test
+    void shareLeavesTheRestForLaterStages() {
+        Deadline deadline = Deadline.after(Duration.ofSeconds(10));
+
+        Deadline planner = deadline.share(0.3);
+
+        assertThat(planner.remaining()).isLessThanOrEqualTo(Duration.ofSeconds(3)).isGreaterThan(Duration.ofSeconds(2));
+        assertThat(deadline.remaining()).isGreaterThan(Duration.ofSeconds(9));
+    }
+
+    @Test
+    void expiredDeadlineHasNothingLeft() {
+        Deadline deadline = Deadline.after(Duration.ofMillis(-1));
+
+        assertThat(deadline.isExpired()).isTrue();
+        assertThat(deadline.remaining()).isZero();
+        assertThat(deadline.share(0.5).isExpired()).isTrue();
+        // JDBC reads 0 as no timeout
+        assertThat(deadline.queryTimeoutSeconds()).isEqualTo(1);
+    }
+
+    @Test
+    void queryTimeoutRoundsUpToWholeSeconds() {
+        assertThat(Deadline.after(Duration.ofMillis(1500)).queryTimeoutSeconds()).isEqualTo(2);
+    }
+
+    @Test
+    void readTimeoutIsTheRemainingTimeCappedByTheMaximum() {
+        Deadline deadline = Deadline.after(Duration.ofSeconds(60));
+
+        assertThat(readTimeout(deadline.requestFactory(Duration.ofSeconds(20)))).isEqualTo(20_000);
+        assertThat(readTimeout(Deadline.after(Duration.ofMillis(-1)).requestFactory(Duration.ofSeconds(20))))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void awaitGivesUpAtTheDeadlineAndCancelsTheWork() {
+        CompletableFuture<String> work = new CompletableFuture<>();
+
+        assertThatThrownBy(() -> Deadline.after(Duration.ofMillis(20)).await(work)).isInstanceOf(TimeoutException.class);
+        assertThat(work).isCancelled();
+    }
+
+    private static int readTimeout(Object factory) {
+        assertThat(factory).isInstanceOf(SimpleClientHttpRequestFactory.class);
+        return (Integer) ReflectionTestUtils.getField(factory, "readTimeout");
+    }
+}
@@ -0,0 +1,113 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiffChunkerTest {
+    private static final String TWO_FILES = """
+            diff --git a/src/Foo.java b/src/Foo.java
+            index 1111111..2222222 100644
+            --- a/src/Foo.java
+            +++ b/src/Foo.java
+            @@ -1,3 +1,3 @@
+            -int a = 1;
+            +int a = 2;
+            @@ -10,3 +10,3 @@
+            -int b = 1;
+            +int b = 2;
+            diff --git a/docs/README.md b/docs/README.md
+            --- a/docs/README.md
+            +++ b/docs/README.md
+            @@ -1 +1 @@
+            -old
+            +new
+            """;
+
+    @Test
+    void smallHunksOfAFileShareOneChunk() {
+        List<DiffChunker.DiffChunk> chunks = DiffChunker.chunk(TWO_FILES, 256, 64);
+
+        assertThat(chunks).extracting(DiffChunker.DiffChunk::filePath).containsExactly("src/Foo.java", "docs/README.md");
+        assertThat(chunks).extracting(DiffChunker.DiffChunk::chunkIndex).containsExactly(0, 1);
+        assertThat(chunks.get(0).content()).isEqualTo("""
+                File: src/Foo.java
+                @@ -1,3 +1,3 @@
+                -int a = 1;
+                +int a = 2;
+                @@ -10,3 +10,3 @@
+                -int b = 1;
+                +int b = 2;
+                """);
+        // File headers (index, ---/+++) are not embedded
+        assertThat(chunks.get(1).content()).isEqualTo("File: docs/README.md\n@@ -1 +1 @@\n-old\n+new\n");
+    }
+
+    @Test
+    void hunksThatDoNotFitTogetherAreSplitAtHunkBoundaries() {
+        // 63 chars: room for one of Foo.java's hunks next to the "File: ..." line, not both
+        List<DiffChunker.DiffChunk> chunks = DiffChunker.chunk(TWO_FILES, 21, 64);
+
+        assertThat(chunks).hasSize(3);
+        assertThat(chunks.get(0).content()).isEqualTo("File: src/Foo.java\n@@ -1,3 +1,3 @@\n-int a = 1;\n+int a = 2;\n");
+        assertThat(chunks.get(1).content()).isEqualTo("File: src/Foo.java\n@@ -10,3 +10,3 @@\n-int b = 1;\n+int b = 2;\n");
+        assertThat(chunks.get(2).filePath()).isEqualTo("docs/README.md");
+    }
+
+    @Test
+    void oversizedHunksAreSplitOnLinesWithinTheTokenLimit() {
+        StringBuilder diff = new StringBuilder("diff --git a/Big.java b/Big.java\n@@ -1,200 +1,200 @@\n");
+        for (int i = 0; i < 200; i++) {
+            diff.append("+line number ").append(i).append('\n');
+        }
+        int maxTokens = 50;
+
+        List<DiffChunker.DiffChunk> chunks = DiffChunker.chunk(diff.toString(), maxTokens, 64);
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        StringBuilder body = new StringBuilder();
+        for (DiffChunker.DiffChunk chunk : chunks) {
+            assertThat(chunk.content().length()).isLessThanOrEqualTo(maxTokens * DiffChunker.CHARS_PER_TOKEN);
+            assertThat(chunk.content()).startsWith("File: Big.java\n").endsWith("\n");
+            body.append(chunk.content().substring("File: Big.java\n".length()));
+        }
+        // Nothing is lost or duplicated by the split
+        assertThat(body.toString()).isEqualTo(diff.substring(diff.indexOf("@@")));
+    }
+
+    @Test
+    void hugeSingleLinesAreCutWithinTheTokenLimit() {
+        // Twice the 107-char budget left beside "File: min.js", so the last cut is exactly budget-sized
+        String line = "x".repeat(213);
+        String diff = "diff --git a/min.js b/min.js\n@@ -1 +1 @@\n+" + line + "\n";
+        int maxTokens = 40;
+
+        List<DiffChunker.DiffChunk> chunks = DiffChunker.chunk(diff, maxTokens, 64);
+
+        assertThat(chunks).allSatisfy(chunk ->
+                assertThat(chunk.content().length()).isLessThanOrEqualTo(maxTokens * DiffChunker.CHARS_PER_TOKEN));
+        String body = chunks.stream()
+                .map(chunk -> chunk.content().substring("File: min.js\n".length()))
+                .reduce("", String::concat);
+        assertThat(body.replace("\n", "")).isEqualTo("@@ -1 +1 @@+" + line);
+    }
+
+    @Test
+    void chunkCountIsCapped() {
+        List<DiffChunker.DiffChunk> chunks = DiffChunker.chunk(TWO_FILES, 21, 2);
+
+        assertThat(chunks).hasSize(2);
+        assertThat(chunks).extracting(DiffChunker.DiffChunk::filePath).containsOnly("src/Foo.java");
+    }
+
+    @Test
+    void textThatIsNotAUnifiedDiffIsEmbeddedAsIs() {
+        assertThat(DiffChunker.chunk("renamed without changes", 256, 64))
+                .extracting(DiffChunker.DiffChunk::content)
+                .containsExactly("File: \nrenamed without changes");
+        assertThat(DiffChunker.chunk("  ", 256, 64)).isEmpty();
+        assertThat(DiffChunker.chunk(null, 256, 64)).isEmpty();
+    }
+}
@@ -0,0 +1,62 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.entity.EmbeddingModelEntity;
+import com.ntsal.ntsal_ai_knowledge_hub.repo.EmbeddingModelRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmbeddingModelServiceTest {
+    private final EmbeddingModelRepository repository = mock(EmbeddingModelRepository.class);
+    private final EmbeddingModelService service = new EmbeddingModelService(repository);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "defaultModelName", "default-model");
+        ReflectionTestUtils.setField(service, "activeModelCacheTtlMs", 60_000L);
+    }
+
+    @Test
+    void activeModelIsLookedUpOnceUntilItChanges() {
+        when(repository.findFirstByStatus(EmbeddingModelEntity.STATUS_ACTIVE))
+                .thenReturn(Optional.of(model("old")), Optional.of(model("new")));
+
+        assertThat(service.getActiveModelName()).isEqualTo("old");
+        assertThat(service.getActiveModelName()).isEqualTo("old");
+        service.activeModelChanged();
+        assertThat(service.getActiveModelName()).isEqualTo("new");
+
+        verify(repository, times(2)).findFirstByStatus(EmbeddingModelEntity.STATUS_ACTIVE);
+    }
+
+    @Test
+    void cachedNameExpires() {
+        ReflectionTestUtils.setField(service, "activeModelCacheTtlMs", 0L);
+        when(repository.findFirstByStatus(EmbeddingModelEntity.STATUS_ACTIVE))
+                .thenReturn(Optional.of(model("old")), Optional.of(model("new")));
+
+        assertThat(service.getActiveModelName()).isEqualTo("old");
+        assertThat(service.getActiveModelName()).isEqualTo("new");
+    }
+
+    @Test
+    void defaultModelWithoutAnActiveRow() {
+        when(repository.findFirstByStatus(EmbeddingModelEntity.STATUS_ACTIVE)).thenReturn(Optional.empty());
+
+        assertThat(service.getActiveModelName()).isEqualTo("default-model");
+    }
+
+    private static EmbeddingModelEntity model(String name) {
+        EmbeddingModelEntity model = new EmbeddingModelEntity();
+        model.setModelName(name);
+        return model;
+    }
+}
@@ -0,0 +1,137 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class FastPathPlannerTest {
+    private final FastPathPlanner planner = new FastPathPlanner();
+
+    @Test
+    void commitHashWithCommitWordIsRetrievedConfidently() {
+        FastPathPlanner.ScoredPlan scored = planner.plan("Show me commit a1b2c3d").orElseThrow();
+
+        assertThat(scored.plan().action()).isEqualTo("retrieve_commit");
+        assertThat(scored.plan().commitHash()).isEqualTo("a1b2c3d");
+        assertThat(scored.confidence()).isEqualTo(0.95);
+    }
+
+    @Test
+    void bareHexTokenIsOnlyLikelyAHash() {
+        FastPathPlanner.ScoredPlan scored = planner.plan("what changed in 4f2e9a1?").orElseThrow();
+
+        assertThat(scored.plan().action()).isEqualTo("retrieve_commit");
+        assertThat(scored.confidence()).isEqualTo(0.7);
+        // Plain words made of hex letters are not hashes
+        assertThat(planner.plan("what was added to the facade")).isEmpty();
+    }
+
+    @Test
+    void numbersAreNotTakenForHashes() {
+        assertThat(planner.plan("show commit 1234567")).isEmpty();
+        assertThat(planner.plan("what changed for ticket 20261019")).isEmpty();
+        assertThat(planner.slots("show commit 1234567").commitHash()).isNull();
+        // Too short for a git short hash
+        assertThat(planner.plan("show commit a1b2c3")).isEmpty();
+    }
+
+    @Test
+    void countWithoutFilters() {
+        FastPathPlanner.ScoredPlan scored = planner.plan("How many commits are there?").orElseThrow();
+
+        assertThat(scored.plan().action()).isEqualTo("execute_sql");
+        assertThat(scored.plan().sql()).isEqualTo("SELECT COUNT(*) FROM commit");
+        assertThat(scored.confidence()).isEqualTo(0.95);
+    }
+
+    @Test
+    void countByAuthorAndDate() {
+        LocalDate today = LocalDate.now();
+
+        FastPathPlanner.ScoredPlan scored = planner.plan("How many commits by Alice last week").orElseThrow();
+
+        assertThat(scored.plan().sql()).isEqualTo("SELECT COUNT(*) FROM commit WHERE LOWER(author) LIKE '%alice%'" +
+                " AND committed_date >= DATE '" + today.minusDays(7) + "'" +
+                " AND committed_date < DATE '" + today.plusDays(1) + "'");
+    }
+
+    @Test
+    void latestCommitsUseDefaultOrRequestedLimit() {
+        assertThat(planner.plan("show me the latest commits").orElseThrow().plan().sql())
+                .isEqualTo("SELECT commit_hash, author, committed_date, message FROM commit ORDER BY committed_date DESC LIMIT 10");
+        assertThat(planner.plan("latest 5 commits").orElseThrow().plan().sql()).endsWith("LIMIT 5");
+        assertThat(planner.plan("latest 500 commits").orElseThrow().plan().sql()).endsWith("LIMIT 50");
+        assertThat(planner.plan("latest 5 commits").orElseThrow().confidence()).isEqualTo(0.9);
+    }
+
+    @Test
+    void listingNeedsAFilter() {
+        FastPathPlanner.ScoredPlan scored = planner.plan("show commits by bob").orElseThrow();
+
+        assertThat(scored.plan().sql())
+                .isEqualTo("SELECT commit_hash, author, committed_date, message FROM commit" +
+                        " WHERE LOWER(author) LIKE '%bob%' ORDER BY committed_date DESC LIMIT 20");
+        assertThat(scored.confidence()).isEqualTo(0.85);
+        assertThat(planner.plan("show commits")).isEmpty();
+    }
+
+    @Test
+    void topicSearchPicksSummaryOrDiffField() {
+        QueryPlannerService.Plan summary = planner.plan("commits about login timeout").orElseThrow().plan();
+        QueryPlannerService.Plan diff = planner.plan("changes touching UserService.java").orElseThrow().plan();
+
+        assertThat(summary.action()).isEqualTo("semantic_search");
+        assertThat(summary.field()).isEqualTo("summary_text");
+        assertThat(summary.query()).isEqualTo("login timeout");
+        assertThat(diff.field()).isEqualTo("diff_text");
+        assertThat(diff.query()).isEqualTo("userservice.java");
+    }
+
+    @Test
+    void filteredTopicSearchIsHybrid() {
+        FastPathPlanner.ScoredPlan scored = planner.plan("find commits by alice about caching").orElseThrow();
+
+        assertThat(scored.plan().action()).isEqualTo("hybrid_search");
+        assertThat(scored.plan().query()).isEqualTo("caching");
+        assertThat(scored.plan().filter()).isEqualTo(new SearchFilter("alice", null, null, null, null));
+        assertThat(scored.confidence()).isEqualTo(0.85);
+    }
+
+    @Test
+    void unrecognisedShapesAreLeftToTheLlm() {
+        assertThat(planner.plan("why did the build break after the upgrade")).isEmpty();
+        assertThat(planner.plan("how many files changed")).isEmpty();
+        assertThat(planner.plan("  ")).isEmpty();
+        assertThat(planner.plan(null)).isEmpty();
+    }
+
+    @Test
+    void slotsReplaceHashAuthorAndDate() {
+        FastPathPlanner.Slots slots = planner.slots("How many commits by Alice last week?");
+
+        assertThat(slots.template()).isEqualTo("how many commits <author> <date>");
+        assertThat(slots.author()).isEqualTo("alice");
+        assertThat(slots.datePhrase()).isEqualTo("last week");
+        assertThat(slots.dateTo()).isEqualTo(LocalDate.now());
+        assertThat(slots.shape()).isEqualTo("AD");
+        assertThat(planner.slots("show commit a1b2c3d").shape()).isEqualTo("H");
+    }
+
+    @Test
+    void plansBelowMinConfidenceGoToTheLlm() {
+        QueryPlannerService plannerService = new QueryPlannerService(null, planner, mock(PlanCache.class));
+        ReflectionTestUtils.setField(plannerService, "fastPathMinConfidence", 0.8);
+
+        assertThat(plannerService.planWithoutLlm("show commit a1b2c3d", Optional.empty())).isPresent();
+        assertThat(plannerService.planWithoutLlm("what changed in 4f2e9a1", Optional.empty())).isEmpty();
+
+        ReflectionTestUtils.setField(plannerService, "fastPathMinConfidence", 0.6);
+        assertThat(plannerService.planWithoutLlm("what changed in 4f2e9a1", Optional.empty())).isPresent();
+    }
+}
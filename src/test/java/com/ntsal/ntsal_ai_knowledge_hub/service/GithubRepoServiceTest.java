@@ -0,0 +1,45 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.repo.GithubRepoRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+
+class GithubRepoServiceTest {
+    private final GithubRepoRepository githubRepoRepository = mock(GithubRepoRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SemanticSearchService semanticSearchService = mock(SemanticSearchService.class);
+    private final GithubRepoService service = new GithubRepoService(githubRepoRepository, jdbcTemplate,
+            new DirectTransactionTemplate(), semanticSearchService);
+
+    @Test
+    void deleteRepoRemovesRowsThatHaveNoForeignKeyToCommit() {
+        service.deleteRepo(7L);
+
+        InOrder order = inOrder(jdbcTemplate, githubRepoRepository, semanticSearchService);
+        // While the commits still exist to join against
+        order.verify(jdbcTemplate).update(startsWith("DELETE FROM commit_chunk"), eq(7L));
+        order.verify(jdbcTemplate).update(startsWith("DELETE FROM commit_embedding_staging"), eq(7L));
+        order.verify(jdbcTemplate).queryForList("SELECT public.drop_commit_partition(?)", 7L);
+        order.verify(jdbcTemplate).update("DELETE FROM commit WHERE github_repo_id = ?", 7L);
+        order.verify(githubRepoRepository).deleteById(7L);
+        order.verify(semanticSearchService).repositoriesChanged();
+        order.verify(semanticSearchService).commitsWritten();
+        order.verifyNoMoreInteractions();
+    }
+
+    private static class DirectTransactionTemplate extends TransactionTemplate {
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            return action.doInTransaction(new SimpleTransactionStatus());
+        }
+    }
+}
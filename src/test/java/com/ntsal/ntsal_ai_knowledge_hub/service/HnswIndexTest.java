@@ -0,0 +1,134 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class HnswIndexTest {
+    private static final int DIMENSION = 32;
+
+    @Test
+    void searchRecallMatchesBruteForce() {
+        Random random = new Random(42);
+        float[][] vectors = new float[2000][];
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100, vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomVector(random);
+            index.add(i, vectors[i]);
+        }
+
+        int k = 10;
+        int found = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(random);
+            Set<Long> exact = new HashSet<>(bruteForce(vectors, query, k));
+            for (HnswIndex.Hit hit : index.search(query, k, 100)) {
+                if (exact.contains(hit.id())) {
+                    found++;
+                }
+            }
+        }
+
+        assertThat(index.size()).isEqualTo(vectors.length);
+        assertThat((double) found / (queries * k)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void hitsAreOrderedByCosineSimilarity() {
+        HnswIndex index = new HnswIndex(2, 4, 16, 0);
+        index.add(1, new float[]{1, 0});
+        index.add(2, new float[]{1, 1});
+        index.add(3, new float[]{0, 1});
+
+        List<HnswIndex.Hit> hits = index.search(new float[]{2, 0}, 3, 16);
+
+        assertThat(hits).extracting(HnswIndex.Hit::id).containsExactly(1L, 2L, 3L);
+        assertThat(hits.get(0).score()).isCloseTo(1.0, offset(1e-6));
+        assertThat(hits.get(2).score()).isCloseTo(0.0, offset(1e-6));
+    }
+
+    @Test
+    void removedIdsAreNeverReturned() {
+        Random random = new Random(7);
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 50, 0);
+        float[][] vectors = new float[200][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomVector(random);
+            index.add(i, vectors[i]);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            index.remove(i);
+        }
+
+        assertThat(index.size()).isEqualTo(150);
+        assertThat(index.tombstoneRatio()).isEqualTo(0.25);
+        for (int i = 0; i < 50; i++) {
+            // Its own vector would be the top hit if it were still searchable
+            assertThat(index.search(vectors[i], 10, 50)).extracting(HnswIndex.Hit::id)
+                    .hasSize(10)
+                    .allMatch(id -> id >= 50);
+        }
+    }
+
+    @Test
+    void readdingAnIdReplacesItsVector() {
+        HnswIndex index = new HnswIndex(2, 4, 16, 0);
+        index.add(1, new float[]{1, 0});
+        index.add(2, new float[]{0, 1});
+        index.add(1, new float[]{0, 1});
+
+        List<HnswIndex.Hit> hits = index.search(new float[]{1, 0}, 5, 16);
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.tombstoneRatio()).isGreaterThan(0);
+        assertThat(hits).extracting(HnswIndex.Hit::id).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(hits).allSatisfy(hit -> assertThat(hit.score()).isCloseTo(0.0, offset(1e-6)));
+    }
+
+    @Test
+    void removingUnknownIdOrSearchingEmptyIndexIsHarmless() {
+        HnswIndex index = new HnswIndex(2, 4, 16, 0);
+        index.remove(99);
+
+        assertThat(index.search(new float[]{1, 0}, 5, 16)).isEmpty();
+        assertThat(index.tombstoneRatio()).isZero();
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static List<Long> bruteForce(float[][] vectors, float[] query, int k) {
+        return IntStream.range(0, vectors.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> -cosine(vectors[i], query)))
+                .limit(k)
+                .map(Integer::longValue)
+                .toList();
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+}
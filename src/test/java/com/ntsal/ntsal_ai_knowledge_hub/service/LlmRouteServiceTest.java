@@ -0,0 +1,62 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.entity.ConfigsEntity;
+import com.ntsal.ntsal_ai_knowledge_hub.entity.LlmRouteEntity;
+import com.ntsal.ntsal_ai_knowledge_hub.repo.LlmRouteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LlmRouteServiceTest {
+    private final LlmRouteRepository repository = mock(LlmRouteRepository.class);
+    private final ConfigsService configsService = mock(ConfigsService.class);
+    private final LlmRouteService service = new LlmRouteService(repository, configsService);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "routeCacheTtlMs", 60_000L);
+    }
+
+    @Test
+    void routesAreLoadedOncePerTaskUntilChanged() {
+        when(repository.findByTaskAndEnabledTrueOrderByPriorityAsc("answer"))
+                .thenReturn(List.of(route("http://primary", "big", 1000)), List.of(route("http://other", "small", null)));
+
+        assertThat(service.routes("answer")).containsExactly(new LlmRouteService.Route("http://primary", "k", "big", 1000));
+        assertThat(service.routes("answer")).hasSize(1);
+        service.routesChanged();
+
+        assertThat(service.routes("answer")).extracting(LlmRouteService.Route::model).containsExactly("small");
+        verify(repository, times(2)).findByTaskAndEnabledTrueOrderByPriorityAsc("answer");
+    }
+
+    @Test
+    void taskWithoutRoutesUsesTheConfigsEndpoint() {
+        ConfigsEntity config = new ConfigsEntity();
+        config.setLlmSummarizerUrl("http://configured");
+        config.setLlmApiKey("secret");
+        config.setLlmModel("configured-model");
+        when(repository.findByTaskAndEnabledTrueOrderByPriorityAsc("summary")).thenReturn(List.of());
+        when(configsService.getLatestConfig()).thenReturn(config);
+
+        assertThat(service.routes("summary"))
+                .containsExactly(new LlmRouteService.Route("http://configured", "secret", "configured-model", null));
+    }
+
+    private static LlmRouteEntity route(String url, String model, Integer timeoutMs) {
+        LlmRouteEntity route = new LlmRouteEntity();
+        route.setUrl(url);
+        route.setApiKey("k");
+        route.setModel(model);
+        route.setTimeoutMs(timeoutMs);
+        return route;
+    }
+}
@@ -0,0 +1,115 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchFilter;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PlanCacheTest {
+    private final FastPathPlanner fastPathPlanner = new FastPathPlanner();
+
+    @Test
+    void authorIsSwappedInSqlLiterals() {
+        QueryPlannerService.Plan plan = sqlPlan("SELECT message FROM commit WHERE LOWER(author) LIKE '%alice%' LIMIT 5");
+
+        Optional<QueryPlannerService.Plan> rebound = rebind(plan,
+                "what did alice commit recently", "what did bob commit recently");
+
+        assertThat(rebound).get().extracting(QueryPlannerService.Plan::sql)
+                .isEqualTo("SELECT message FROM commit WHERE LOWER(author) LIKE '%bob%' LIMIT 5");
+    }
+
+    @Test
+    void authorIsSwappedInFilterAndQuery() {
+        QueryPlannerService.Plan plan = new QueryPlannerService.Plan("hybrid_search", null, "summary_text",
+                "alice caching work", null, new SearchFilter("alice", null, null, null, null));
+
+        QueryPlannerService.Plan rebound = rebind(plan,
+                "what caching work was done by alice", "what caching work was done by bob").orElseThrow();
+
+        assertThat(rebound.filter().author()).isEqualTo("bob");
+        assertThat(rebound.query()).isEqualTo("bob caching work");
+    }
+
+    @Test
+    void dateRangeIsSwappedIncludingExclusiveBound() {
+        QueryPlannerService.Plan plan = sqlPlan("SELECT COUNT(*) FROM commit " +
+                "WHERE committed_date >= DATE '2024-01-01' AND committed_date < DATE '2024-02-01' AND message ILIKE '%fix%'");
+
+        QueryPlannerService.Plan rebound = rebind(plan,
+                "how many fixes between 2024-01-01 and 2024-01-31",
+                "how many fixes between 2024-03-01 and 2024-03-31").orElseThrow();
+
+        assertThat(rebound.sql()).isEqualTo("SELECT COUNT(*) FROM commit " +
+                "WHERE committed_date >= DATE '2024-03-01' AND committed_date < DATE '2024-04-01' AND message ILIKE '%fix%'");
+    }
+
+    @Test
+    void dateFilterIsSwapped() {
+        QueryPlannerService.Plan plan = new QueryPlannerService.Plan("hybrid_search", null, "summary_text", "flaky tests",
+                null, new SearchFilter(null, null, LocalDate.of(2024, 1, 1), null, null));
+
+        QueryPlannerService.Plan rebound = rebind(plan,
+                "what about flaky tests since 2024-01-01", "what about flaky tests since 2024-06-01").orElseThrow();
+
+        assertThat(rebound.filter().from()).isEqualTo(LocalDate.of(2024, 6, 1));
+        assertThat(rebound.query()).isEqualTo("flaky tests");
+    }
+
+    @Test
+    void commitHashIsSwapped() {
+        QueryPlannerService.Plan plan = new QueryPlannerService.Plan("retrieve_commit", null, null, null, "a1b2c3d",
+                SearchFilter.NONE);
+
+        Optional<QueryPlannerService.Plan> rebound = rebind(plan,
+                "explain the reasoning behind a1b2c3d", "explain the reasoning behind 9e8f7a6");
+
+        assertThat(rebound).get().extracting(QueryPlannerService.Plan::commitHash).isEqualTo("9e8f7a6");
+    }
+
+    @Test
+    void slotValueMissingFromThePlanIsNotRebound() {
+        // The plan doesn't mention alice anywhere, so it can't be turned into bob's
+        QueryPlannerService.Plan plan = sqlPlan("SELECT COUNT(*) FROM commit");
+
+        assertThat(rebind(plan, "what did alice commit recently", "what did bob commit recently")).isEmpty();
+    }
+
+    @Test
+    void planWordMissingFromNewQuestionIsNotRebound() {
+        QueryPlannerService.Plan plan = semanticPlan("ui regressions");
+
+        assertThat(rebind(plan, "were there ui regressions", "were there db regressions")).isEmpty();
+        assertThat(rebind(plan, "were there ui regressions", "were there ci regressions")).isEmpty();
+    }
+
+    @Test
+    void shortWordsInSqlLiteralsAreGuardedToo() {
+        QueryPlannerService.Plan plan = sqlPlan("SELECT COUNT(*) FROM commit WHERE message ILIKE '%js%'");
+
+        assertThat(rebind(plan, "how many js commits", "how many qa commits")).isEmpty();
+    }
+
+    @Test
+    void paraphraseWordsOutsideThePlanAreIgnored() {
+        QueryPlannerService.Plan plan = semanticPlan("caching");
+
+        assertThat(rebind(plan, "show me changes to caching", "list changes to caching"))
+                .get().extracting(QueryPlannerService.Plan::query).isEqualTo("caching");
+    }
+
+    private Optional<QueryPlannerService.Plan> rebind(QueryPlannerService.Plan plan, String cached, String current) {
+        return PlanCache.rebind(plan, fastPathPlanner.slots(cached), fastPathPlanner.slots(current));
+    }
+
+    private static QueryPlannerService.Plan sqlPlan(String sql) {
+        return new QueryPlannerService.Plan("execute_sql", sql, null, null, null, SearchFilter.NONE);
+    }
+
+    private static QueryPlannerService.Plan semanticPlan(String query) {
+        return new QueryPlannerService.Plan("semantic_search", null, "summary_text", query, null, SearchFilter.NONE);
+    }
+}
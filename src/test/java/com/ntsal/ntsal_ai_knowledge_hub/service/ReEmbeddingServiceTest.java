@@ -0,0 +1,46 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+
+class ReEmbeddingServiceTest {
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final VectorIndexService vectorIndexService = mock(VectorIndexService.class);
+    private final SemanticSearchService semanticSearchService = mock(SemanticSearchService.class);
+    private final EmbeddingModelService embeddingModelService = mock(EmbeddingModelService.class);
+
+    private final ReEmbeddingService service = new ReEmbeddingService(jdbcTemplate, new DirectTransactionTemplate(),
+            null, embeddingModelService, vectorIndexService, semanticSearchService, null);
+
+    @Test
+    void cutoverDropsTheOldModelBeforeNewGenerationSearchesCanUseIt() {
+        service.cutover("new-model");
+
+        InOrder order = inOrder(jdbcTemplate, embeddingModelService, vectorIndexService, semanticSearchService);
+        order.verify(jdbcTemplate).update(startsWith("UPDATE embedding_model SET status = ?, activated_at"),
+                eq("ACTIVE"), eq("new-model"));
+        order.verify(jdbcTemplate).update(startsWith("DELETE FROM commit_embedding_staging"), eq("new-model"));
+        order.verify(embeddingModelService).activeModelChanged();
+        // Cleared synchronously: the rebuild below only starts a background load
+        order.verify(vectorIndexService).modelChanged();
+        order.verify(semanticSearchService).embeddingsWritten();
+        order.verify(vectorIndexService).rebuildAsync();
+        order.verifyNoMoreInteractions();
+    }
+
+    private static class DirectTransactionTemplate extends TransactionTemplate {
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            return action.doInTransaction(new SimpleTransactionStatus());
+        }
+    }
+}
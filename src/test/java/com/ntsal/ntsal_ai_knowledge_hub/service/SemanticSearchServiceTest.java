@@ -0,0 +1,178 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchCursor;
+import com.ntsal.ntsal_ai_knowledge_hub.dto.SearchFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SemanticSearchServiceTest {
+    private static final float[] QUERY = {0.1f, 0.2f, 0.3f};
+    private static final SearchFilter ALL_FILTERS = new SearchFilter(
+            "alice", "payments", LocalDate.of(2026, 1, 1), LocalDate.of(2026, 6, 30), "src/Order.java");
+
+    private final RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate();
+    private final EmbeddingModelService embeddingModelService = mock(EmbeddingModelService.class);
+    private final SemanticSearchService service = new SemanticSearchService(jdbcTemplate,
+            new DirectTransactionTemplate(), embeddingModelService, mock(VectorIndexService.class), 1);
+
+    @BeforeEach
+    void setUp() {
+        when(embeddingModelService.getActiveModelName()).thenReturn("active-model");
+        ReflectionTestUtils.setField(service, "quantization", SemanticSearchService.VectorQuantization.NONE);
+        ReflectionTestUtils.setField(service, "quantizationRerankFactor", 4);
+        ReflectionTestUtils.setField(service, "chunkCandidatesPerResult", 5);
+        ReflectionTestUtils.setField(service, "hybridCandidates", 50);
+        ReflectionTestUtils.setField(service, "rrfK", 60);
+    }
+
+    @ParameterizedTest
+    @EnumSource(SemanticSearchService.VectorQuantization.class)
+    void vectorSearchIsRestrictedToTheActiveModel(SemanticSearchService.VectorQuantization quantization) {
+        ReflectionTestUtils.setField(service, "quantization", quantization);
+
+        service.searchByEmbedding(QUERY, 10);
+
+        assertVectorStatementsBindTheActiveModel(1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(SemanticSearchService.VectorQuantization.class)
+    void filteredSearchBindsEveryFilter(SemanticSearchService.VectorQuantization quantization) {
+        ReflectionTestUtils.setField(service, "quantization", quantization);
+
+        service.hybridSearch(ALL_FILTERS, QUERY, 10);
+
+        // Repositories are matched inside the search statement, not looked up by a separate query first
+        assertThat(jdbcTemplate.statements).filteredOn(statement -> !statement.sql().contains("set_config")).hasSize(1);
+        assertVectorStatementsBindTheActiveModel(1);
+        RecordingJdbcTemplate.Statement search = jdbcTemplate.vectorStatements().get(0);
+        assertThat(search.args()).contains("%alice%", "%payments%", "%src/Order.java%");
+        // Commits without chunks are still found by the paths in their diff
+        assertThat(search.sql()).contains("c.diff_text LIKE ?").doesNotContain("commit_chunk");
+    }
+
+    @Test
+    void fusedSearchBindsBothRetrievers() {
+        service.fusedSearch("NPE in OrderMapper", QUERY, 10);
+
+        assertVectorStatementsBindTheActiveModel(1);
+        assertThat(jdbcTemplate.vectorStatements().get(0).args()).contains("npe | in | ordermapper");
+    }
+
+    @Test
+    void batchSearchBindsEachBranch() {
+        service.batchSearch(List.of(
+                new SemanticSearchService.VectorQuery(QUERY, null, 5),
+                new SemanticSearchService.VectorQuery(QUERY, ALL_FILTERS, 3)));
+
+        assertVectorStatementsBindTheActiveModel(1);
+        assertThat(jdbcTemplate.vectorStatements().get(0).sql()).contains("UNION ALL");
+    }
+
+    @Test
+    void shortPageIsCompletedByAnExactScanAfterTheCursor() {
+        SearchCursor after = new SearchCursor(0.25, 42);
+
+        SearchCursor next = service.searchPage(ALL_FILTERS, QUERY, 20, after, hit -> { });
+
+        // Nothing matched, so the page is short and there is no next cursor
+        assertThat(next).isNull();
+        assertVectorStatementsBindTheActiveModel(2);
+        List<RecordingJdbcTemplate.Statement> statements = jdbcTemplate.vectorStatements();
+        assertThat(statements.get(0).sql()).contains("frontier");
+        assertThat(statements.get(1).sql()).doesNotContain("frontier");
+        assertThat(statements).allSatisfy(statement -> assertThat(statement.args()).contains(0.25, 42L));
+    }
+
+    @Test
+    void chunkSearchBindsTheActiveModel() {
+        service.searchChunks(QUERY, 10, SemanticSearchService.ChunkAggregation.SUM);
+
+        assertVectorStatementsBindTheActiveModel(1);
+        assertThat(jdbcTemplate.vectorStatements().get(0).sql()).contains("SUM(1 - h.distance)");
+    }
+
+    private void assertVectorStatementsBindTheActiveModel(int expected) {
+        assertThat(jdbcTemplate.statements).allSatisfy(statement ->
+                assertThat(statement.placeholders()).as(statement.sql()).isEqualTo(statement.args().size()));
+        assertThat(jdbcTemplate.vectorStatements()).hasSize(expected).allSatisfy(statement -> {
+            assertThat(statement.sql()).containsPattern("embedding_model = \\?");
+            assertThat(statement.args()).contains("active-model");
+        });
+    }
+
+    /**
+     * Records statements instead of running them; every query finds no rows
+     */
+    private static class RecordingJdbcTemplate extends JdbcTemplate {
+        private final List<Statement> statements = new ArrayList<>();
+
+        record Statement(String sql, List<Object> args) {
+            long placeholders() {
+                return sql.chars().filter(c -> c == '?').count();
+            }
+        }
+
+        List<Statement> vectorStatements() {
+            return statements.stream().filter(statement -> statement.sql().contains("<=>")).toList();
+        }
+
+        private void record(String sql, Object[] args) {
+            statements.add(new Statement(sql, Arrays.asList(args)));
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            record(sql, args);
+            return List.of();
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch, Object... args) {
+            record(sql, args);
+        }
+
+        @Override
+        public List<Map<String, Object>> queryForList(String sql) {
+            return queryForList(sql, new Object[0]);
+        }
+
+        @Override
+        public List<Map<String, Object>> queryForList(String sql, Object... args) {
+            record(sql, args);
+            return List.of();
+        }
+
+        @Override
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            record(sql, args);
+            return List.of();
+        }
+    }
+
+    private static class DirectTransactionTemplate extends TransactionTemplate {
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            return action.doInTransaction(new SimpleTransactionStatus());
+        }
+    }
+}
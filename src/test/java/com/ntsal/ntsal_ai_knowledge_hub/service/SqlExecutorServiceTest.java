@@ -0,0 +1,102 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.client.McpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class SqlExecutorServiceTest {
+    private final McpClient mcpClient = mock(McpClient.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ContextPacker contextPacker = mock(ContextPacker.class);
+    private final SqlExecutorService service = new SqlExecutorService(mcpClient, jdbcTemplate,
+            contextPacker, dataSourceProperties(), 1, 1000);
+
+    @AfterEach
+    void tearDown() {
+        service.closeGeneratedSqlPool();
+    }
+
+    @Test
+    void noJdbcRetryOnceMcpUsedUpTheDeadline() {
+        when(mcpClient.executeSql("SELECT 1")).thenReturn(Mono.just(Map.of("error", "MCP call exceeded the deadline")));
+
+        assertThatThrownBy(() -> service.executeSql("SELECT 1", "commit", Deadline.after(Duration.ZERO)).block())
+                .hasCauseInstanceOf(TimeoutException.class);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void mcpResultIsUsedWithoutJdbc() {
+        when(mcpClient.executeSql("SELECT 1")).thenReturn(Mono.just(Map.of("result", "42")));
+        when(contextPacker.packText("42", "commit")).thenReturn("42");
+
+        assertThat(service.executeSql("SELECT 1", "commit", Deadline.after(Duration.ofSeconds(5))).block())
+                .isEqualTo("42");
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void lookupBindsItsParametersOnTheReadOnlyPool() throws Exception {
+        JdbcTemplate readOnly = mock(JdbcTemplate.class);
+        ReflectionTestUtils.setField(service, "generatedSqlJdbcTemplate", readOnly);
+        when(readOnly.query(any(PreparedStatementCreator.class), any(ColumnMapRowMapper.class)))
+                .thenReturn(List.of(Map.of("commit_hash", "a1b2c3d4")));
+        when(contextPacker.packRows(List.of(Map.of("commit_hash", "a1b2c3d4")), "commit")).thenReturn("commit_hash: a1b2c3d4");
+
+        String result = service.executeQuery("SELECT * FROM commit WHERE commit_hash LIKE ? || '%'", "commit",
+                Deadline.after(Duration.ofSeconds(5)), "a1b2c3d").block();
+
+        assertThat(result).isEqualTo("commit_hash: a1b2c3d4");
+        ArgumentCaptor<PreparedStatementCreator> creator = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+        verify(readOnly).query(creator.capture(), any(ColumnMapRowMapper.class));
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        creator.getValue().createPreparedStatement(connection);
+        verify(statement).setObject(1, "a1b2c3d");
+        verify(statement).setQueryTimeout(5);
+        verifyNoInteractions(mcpClient, jdbcTemplate);
+    }
+
+    @Test
+    void cancelledLookupIsATimeout() {
+        JdbcTemplate readOnly = mock(JdbcTemplate.class);
+        ReflectionTestUtils.setField(service, "generatedSqlJdbcTemplate", readOnly);
+        when(readOnly.query(any(PreparedStatementCreator.class), any(ColumnMapRowMapper.class)))
+                .thenThrow(new QueryTimeoutException("canceling statement due to statement timeout"));
+
+        assertThatThrownBy(() -> service.executeQuery("SELECT 1", "commit", Deadline.after(Duration.ofSeconds(5))).block())
+                .hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    private static DataSourceProperties dataSourceProperties() {
+        DataSourceProperties properties = new DataSourceProperties();
+        // Never connected to: the pool is lazy and these tests don't reach it
+        properties.setUrl("jdbc:postgresql://localhost:1/none");
+        return properties;
+    }
+}
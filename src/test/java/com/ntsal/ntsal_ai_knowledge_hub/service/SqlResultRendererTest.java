@@ -0,0 +1,115 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlResultRendererTest {
+
+    @Test
+    void noRows() {
+        assertThat(SqlResultRenderer.render(List.of(), 1000, 200)).isEqualTo("No results found.");
+        assertThat(SqlResultRenderer.render(null, 1000, 200)).isEqualTo("No results found.");
+    }
+
+    @Test
+    void singleValue() {
+        assertThat(SqlResultRenderer.render(List.of(row("count", 42L)), 1000, 200)).isEqualTo("count: 42\n");
+    }
+
+    @Test
+    void singleRowIsOneLinePerColumn() {
+        String rendered = SqlResultRenderer.render(
+                List.of(row("commit_hash", "a1b2c3d", "author", "alice", "feedback", null)), 1000, 200);
+
+        assertThat(rendered).isEqualTo("commit_hash: a1b2c3d\nauthor: alice\nfeedback: NULL\n");
+    }
+
+    @Test
+    void singleRowLongTextGetsTheRestOfTheBudget() {
+        String diff = "x".repeat(5000);
+
+        String rendered = SqlResultRenderer.render(List.of(row("commit_hash", "a1b2c3d", "diff_text", diff)), 500, 50);
+
+        assertThat(rendered).startsWith("commit_hash: a1b2c3d\ndiff_text: xxx").endsWith("...\n");
+        assertThat(rendered.length()).isLessThanOrEqualTo(500);
+        // Not cut to the table cell width
+        assertThat(rendered.length()).isGreaterThan(400);
+    }
+
+    @Test
+    void tableWritesTheHeaderOnce() {
+        List<Map<String, Object>> rows = List.of(
+                row("author", "alice", "ratio", 0.333333333, "message", "fix | pipe\nand newline"),
+                row("author", "bob", "ratio", 2.0, "message", null));
+
+        String rendered = SqlResultRenderer.render(rows, 1000, 200);
+
+        assertThat(rendered).isEqualTo("""
+                author | ratio | message
+                alice | 0.3333 | fix \\| pipe and newline
+                bob | 2 | NULL
+                """);
+    }
+
+    @Test
+    void tableCellsAreCutToTheirShareOfMaxCellChars() {
+        List<Map<String, Object>> rows = List.of(
+                row("a", "y".repeat(300), "b", "z"),
+                row("a", "short", "b", "z"));
+
+        String rendered = SqlResultRenderer.render(rows, 10_000, 200);
+
+        // 200 / 2 columns
+        assertThat(rendered.lines().skip(1).findFirst().orElseThrow())
+                .isEqualTo("y".repeat(97) + "... | z");
+    }
+
+    @Test
+    void rowsThatDoNotFitAreSummarized() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(row("id", i, "author", "dev" + (i % 3), "day", LocalDate.of(2024, 1, 1).plusDays(i),
+                    "score", i % 2 == 0 ? 1.5 : null));
+        }
+
+        String rendered = SqlResultRenderer.render(rows, 400, 200);
+
+        assertThat(rendered).startsWith("id | author | day | score\n0 | dev0 | 2024-01-01 | 1.5\n");
+        assertThat(rendered).endsWith("""
+                Summary of all 100 rows:
+                  id: min 0, max 99, avg 49.50, sum 4950
+                  author: 3 distinct
+                  day: 2024-01-01 .. 2024-04-09
+                  score: min 1.50, max 1.50, avg 1.50, sum 75.00, 50 null
+                """);
+        long listed = rendered.lines().filter(line -> line.matches("\\d+ \\| .*")).count();
+        assertThat(rendered).contains("... (" + (100 - listed) + " more rows omitted)\n");
+        assertThat(listed).isGreaterThan(0);
+        assertThat(rendered.length()).isLessThanOrEqualTo(400 + "... (100 more rows omitted)\n".length());
+    }
+
+    @Test
+    void summaryOfAllNullColumn() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            rows.add(row("id", i, "feedback", null));
+        }
+
+        assertThat(SqlResultRenderer.render(rows, 200, 200)).contains("  feedback: all null\n");
+    }
+
+    private static Map<String, Object> row(Object... columnsAndValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < columnsAndValues.length; i += 2) {
+            row.put((String) columnsAndValues[i], columnsAndValues[i + 1]);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,217 @@
+package com.ntsal.ntsal_ai_knowledge_hub.service;
+
+import com.ntsal.ntsal_ai_knowledge_hub.entity.EmbeddingModelEntity;
+import com.ntsal.ntsal_ai_knowledge_hub.entity.converter.EmbeddingVector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VectorIndexServiceTest {
+    private static final float[] X = {1f, 0f, 0f};
+    private static final float[] Y = {0f, 1f, 0f};
+
+    private final StoredVectors stored = new StoredVectors();
+    private final ActiveModel activeModel = new ActiveModel();
+    private final VectorIndexService service = new VectorIndexService(stored, activeModel);
+
+    private Thread background;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "m", 16);
+        ReflectionTestUtils.setField(service, "efConstruction", 100);
+        ReflectionTestUtils.setField(service, "defaultEfSearch", 64);
+        ReflectionTestUtils.setField(service, "loadBatchSize", 5000);
+        ReflectionTestUtils.setField(service, "rebuildTombstoneRatio", 0.2);
+        activeModel.name = "old";
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        stored.release();
+        if (background != null) {
+            background.join(5000);
+        }
+    }
+
+    @Test
+    void searchUsesTheLoadedIndex() {
+        stored.put("old", 1, X);
+        stored.put("old", 2, Y);
+
+        service.rebuild();
+
+        assertThat(service.search(X, 1, null)).hasValueSatisfying(hits ->
+                assertThat(hits).extracting(HnswIndex.Hit::id).containsExactly(1L));
+    }
+
+    @Test
+    void rebuildRequestedDuringALoadRunsAfterIt() throws InterruptedException {
+        stored.put("old", 1, X);
+        startBlockedRebuild();
+
+        // Arrives mid-load and must not be dropped
+        service.rebuild();
+        stored.put("old", 2, Y);
+        finishRebuild();
+
+        assertThat(stored.loads.get()).isEqualTo(2);
+        assertThat(service.search(Y, 1, null)).hasValueSatisfying(hits ->
+                assertThat(hits).extracting(HnswIndex.Hit::id).containsExactly(2L));
+    }
+
+    @Test
+    void upsertDuringALoadIsAppliedToTheNewIndex() throws InterruptedException {
+        stored.put("old", 1, X);
+        startBlockedRebuild();
+
+        service.upsert(2, new EmbeddingVector(Y), "old");
+        service.upsert(3, new EmbeddingVector(Y), "other");
+        finishRebuild();
+
+        assertThat(service.getStatus()).containsEntry("size", 2);
+        assertThat(service.search(Y, 1, null)).hasValueSatisfying(hits ->
+                assertThat(hits).extracting(HnswIndex.Hit::id).containsExactly(2L));
+    }
+
+    @Test
+    void modelChangeClearsTheIndexImmediately() {
+        stored.put("old", 1, X);
+        service.rebuild();
+
+        service.modelChanged();
+
+        assertThat(service.search(X, 1, null)).isEmpty();
+        assertThat(service.getStatus()).containsEntry("ready", false);
+    }
+
+    @Test
+    void loadRunningDuringAModelChangeIsDiscardedAndRepeated() throws InterruptedException {
+        stored.put("old", 1, X);
+        stored.put("new", 2, Y);
+        startBlockedRebuild();
+
+        activeModel.name = "new";
+        service.modelChanged();
+        // A write of the old model that raced with the cutover
+        service.upsert(3, new EmbeddingVector(X), "old");
+        finishRebuild();
+
+        assertThat(stored.loads.get()).isEqualTo(2);
+        assertThat(service.getStatus()).containsEntry("model", "new").containsEntry("size", 1);
+        assertThat(service.search(X, 5, null)).hasValueSatisfying(hits ->
+                assertThat(hits).extracting(HnswIndex.Hit::id).containsExactly(2L));
+    }
+
+    @Test
+    void indexOfAnotherModelIsNotSearched() {
+        stored.put("old", 1, X);
+        service.rebuild();
+
+        // Cut over by another instance: this one still holds the old model's graph
+        activeModel.name = "new";
+
+        assertThat(service.search(X, 1, null)).isEmpty();
+    }
+
+    private void startBlockedRebuild() throws InterruptedException {
+        stored.block();
+        background = new Thread(service::rebuild);
+        background.start();
+        assertThat(stored.entered.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private void finishRebuild() throws InterruptedException {
+        stored.release();
+        background.join(5000);
+        assertThat(background.isAlive()).isFalse();
+    }
+
+    /**
+     * commit.embedding_vector rows per model; the first page query can be held to keep a load running
+     */
+    private static class StoredVectors extends JdbcTemplate {
+        private final Map<String, Map<Long, float[]>> vectorsByModel = new ConcurrentHashMap<>();
+        private final AtomicInteger loads = new AtomicInteger();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private volatile CountDownLatch gate;
+
+        void put(String model, long id, float[] vector) {
+            vectorsByModel.computeIfAbsent(model, key -> new ConcurrentHashMap<>()).put(id, vector);
+        }
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            if (gate != null) {
+                gate.countDown();
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            loads.incrementAndGet();
+            return (T) Integer.valueOf(vectorsByModel.getOrDefault((String) args[0], Map.of()).size());
+        }
+
+        @Override
+        public List<Map<String, Object>> queryForList(String sql, Object... args) {
+            CountDownLatch held = gate;
+            if (held != null) {
+                entered.countDown();
+                try {
+                    held.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                gate = null;
+            }
+            long afterId = (Long) args[1];
+            List<Map<String, Object>> page = new ArrayList<>();
+            vectorsByModel.getOrDefault((String) args[0], Map.of()).entrySet().stream()
+                    .filter(entry -> entry.getKey() > afterId)
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(entry -> page.add(Map.of(
+                            "id", entry.getKey(), "embedding_vector", new EmbeddingVector(entry.getValue()))));
+            return page;
+        }
+    }
+
+    private static class ActiveModel extends EmbeddingModelService {
+        private volatile String name;
+
+        ActiveModel() {
+            super(null);
+        }
+
+        @Override
+        public Optional<EmbeddingModelEntity> getActiveModel() {
+            EmbeddingModelEntity model = new EmbeddingModelEntity();
+            model.setModelName(name);
+            model.setDimension(3);
+            return Optional.of(model);
+        }
+
+        @Override
+        public String getActiveModelName() {
+            return name;
+        }
+    }
+}